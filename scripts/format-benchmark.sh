@@ -0,0 +1,54 @@
+#!/usr/bin/env bash
+# Compares JSON, CBOR and Smile responses of a running backend: bytes on the wire and
+# server CPU per request (utime+stime of the backend process, Linux /proc only).
+#
+#   scripts/format-benchmark.sh                     # defaults below
+#   BASE_URL=http://localhost:8080 USER_ID=1 FROM=2025-01-01 TO=2025-12-31 REQUESTS=200 scripts/format-benchmark.sh
+set -euo pipefail
+
+BASE_URL=${BASE_URL:-http://localhost:8080}
+USER_ID=${USER_ID:-1}
+FROM=${FROM:-$(date -d '-1 year' +%F)}
+TO=${TO:-$(date +%F)}
+REQUESTS=${REQUESTS:-100}
+PID=${BACKEND_PID:-$(pgrep -f 'expense-tracker-backend.*\.jar' | head -1 || true)}
+
+if [ -z "$PID" ] || [ ! -r "/proc/$PID/stat" ]; then
+  echo "❌ Backend process not found, set BACKEND_PID" >&2
+  exit 1
+fi
+
+TICK_MS=$(( 1000 / $(getconf CLK_TCK) ))
+QUERY="userId=$USER_ID&from=$FROM&to=$TO"
+ENDPOINTS=(
+  "/api/expenses?$QUERY"
+  "/api/reports/monthly?$QUERY"
+  "/api/reports/by-category?$QUERY"
+  "/api/reports/balance-series?$QUERY"
+  "/api/expenses/export?$QUERY"
+)
+FORMATS=(application/json application/cbor application/x-jackson-smile)
+
+cpu_ticks() {
+  # Fields 14 and 15 are utime and stime; the command name (field 2) may contain spaces
+  sed 's/^.*) //' "/proc/$PID/stat" | awk '{ print $12 + $13 }'
+}
+
+printf "%-40s %-30s %12s %14s\n" "endpoint" "accept" "bytes" "cpu ms/req"
+for endpoint in "${ENDPOINTS[@]}"; do
+  formats=("${FORMATS[@]}")
+  if [[ "$endpoint" == /api/expenses/export* ]]; then
+    # The export streams CSV by default and CBOR on request
+    formats=(text/csv application/cbor)
+  fi
+  for format in "${formats[@]}"; do
+    bytes=$(curl -s -o /dev/null -H "Accept: $format" -w '%{size_download}' "$BASE_URL$endpoint")
+    # Warm up, then measure
+    for _ in $(seq 1 10); do curl -s -o /dev/null -H "Accept: $format" "$BASE_URL$endpoint"; done
+    before=$(cpu_ticks)
+    for _ in $(seq 1 "$REQUESTS"); do curl -s -o /dev/null -H "Accept: $format" "$BASE_URL$endpoint"; done
+    after=$(cpu_ticks)
+    cpu=$(awk -v t="$(( (after - before) * TICK_MS ))" -v n="$REQUESTS" 'BEGIN { printf "%.2f", t / n }')
+    printf "%-40s %-30s %12s %14s\n" "${endpoint%%\?*}" "$format" "$bytes" "$cpu"
+  done
+done
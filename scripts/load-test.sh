@@ -0,0 +1,123 @@
+#!/usr/bin/env bash
+# Compares the platform thread pool with virtual threads under a mixed load: slow report
+# requests in a closed loop while fast requests are timed. Each mode starts the backend on a
+# fresh copy of the same database, with admission control off so only threading differs.
+#
+#   mvn package -DskipTests
+#   DB_FILE=expenses.db SLOW_CONCURRENCY=100 DURATION=30 scripts/load-test.sh
+#
+# Virtual threads need Java 21 or later; on older runtimes only the platform run is measured.
+set -euo pipefail
+
+DB_FILE=${DB_FILE:-expenses.db}
+PORT=${LOAD_PORT:-18081}
+USER_ID=${USER_ID:-1}
+FROM=${FROM:-$(date -d '-1 year' +%F)}
+TO=${TO:-$(date +%F)}
+SLOW_CONCURRENCY=${SLOW_CONCURRENCY:-50}
+FAST_CONCURRENCY=${FAST_CONCURRENCY:-10}
+FAST_REQUESTS=${FAST_REQUESTS:-500}
+DURATION=${DURATION:-20}
+TOMCAT_THREADS=${TOMCAT_THREADS:-200}
+ROOT="$(cd "$(dirname "$0")/.." && pwd)"
+JAR=$(ls "$ROOT"/target/expense-tracker-backend-*.jar 2>/dev/null | grep -v fast-start | head -1 || true)
+
+if [ -z "$JAR" ]; then
+  echo "❌ No jar in target/, run: mvn package -DskipTests" >&2
+  exit 1
+fi
+if [ ! -f "$DB_FILE" ]; then
+  echo "❌ Database $DB_FILE not found, set DB_FILE to a database with some history" >&2
+  exit 1
+fi
+
+JAVA_MAJOR=$(java -version 2>&1 | awk -F'"' '/version/ { split($2, v, "."); print v[1]; exit }')
+VIRTUAL=true
+if [ "$JAVA_MAJOR" -lt 21 ]; then
+  echo "⚠️  Java $JAVA_MAJOR: virtual threads need 21, only the platform run is measured"
+  VIRTUAL=false
+fi
+
+WORK=$(mktemp -d)
+PID=""
+trap '[ -n "$PID" ] && kill "$PID" 2>/dev/null || true; rm -rf "$WORK"' EXIT
+BASE="http://localhost:$PORT"
+SLOW_URL="$BASE/api/reports/balance-series?userId=$USER_ID&from=$FROM&to=$TO&resolution=day"
+FAST_URL="$BASE/api/accounts?userId=$USER_ID"
+
+# One table row; the pinned-thread count is only shown when there is a virtual run
+row() {
+  if [ "$VIRTUAL" = true ]; then
+    printf "%-10s %12s %10s %10s %10s %10s %12s %8s\n" "$@"
+  else
+    printf "%-10s %12s %10s %10s %10s %10s %12s\n" "${@:1:7}"
+  fi
+}
+
+percentile() {
+  # $1: percentile, reads sorted seconds on stdin, prints milliseconds
+  awk -v p="$1" '{ v[NR] = $1 } END { i = int((NR - 1) * p / 100) + 1; printf "%.0f", v[i] * 1000 }'
+}
+
+run() {
+  local mode=$1 virtual=$2
+  local dir="$WORK/$mode"
+  mkdir -p "$dir"
+  cp "$DB_FILE" "$dir/expenses.db"
+
+  local opts=()
+  if [ "$virtual" = true ]; then
+    # Logs a stack trace whenever a virtual thread blocks while pinned to its carrier
+    opts=(-Djdk.tracePinnedThreads=short)
+  fi
+  java "${opts[@]}" -jar "$JAR" --server.port="$PORT" --spring.profiles.active=dev \
+    --spring.datasource.url="jdbc:sqlite:$dir/expenses.db?journal_mode=WAL" \
+    --spring.threads.virtual.enabled="$virtual" --server.tomcat.threads.max="$TOMCAT_THREADS" \
+    --app.admission.enabled=false --logging.level.org.hibernate.SQL=WARN > "$dir/app.log" 2>&1 &
+  PID=$!
+  until curl -sf -o /dev/null "$FAST_URL"; do
+    if ! kill -0 "$PID" 2>/dev/null; then
+      echo "❌ Backend exited, see log:" >&2
+      tail -20 "$dir/app.log" >&2
+      exit 1
+    fi
+    sleep 0.5
+  done
+
+  # Slow requests in a closed loop for DURATION seconds
+  local end=$((SECONDS + DURATION))
+  for i in $(seq 1 "$SLOW_CONCURRENCY"); do
+    (while [ "$SECONDS" -lt "$end" ]; do
+      curl -s -o /dev/null -w '%{http_code} %{time_total}\n' "$SLOW_URL" >> "$dir/slow-$i.txt" || true
+    done) &
+  done
+  sleep 2
+  seq 1 "$FAST_REQUESTS" | xargs -P "$FAST_CONCURRENCY" -I{} \
+    curl -s -o /dev/null -w '%{http_code} %{time_total}\n' "$FAST_URL" > "$dir/fast.txt" || true
+  wait $(jobs -p | grep -v "^$PID$") 2>/dev/null || true
+
+  cat "$dir"/slow-*.txt > "$dir/slow.txt"
+  local slow_ok fast_ok fast_err p50 p95 p99 pinned
+  slow_ok=$(awk '$1 == 200' "$dir/slow.txt" | wc -l)
+  fast_ok=$(awk '$1 == 200' "$dir/fast.txt" | wc -l)
+  fast_err=$(awk '$1 != 200' "$dir/fast.txt" | wc -l)
+  awk '$1 == 200 { print $2 }' "$dir/fast.txt" | sort -n > "$dir/fast-sorted.txt"
+  p50=$(percentile 50 < "$dir/fast-sorted.txt")
+  p95=$(percentile 95 < "$dir/fast-sorted.txt")
+  p99=$(percentile 99 < "$dir/fast-sorted.txt")
+  pinned=$(grep -c "reason:\|onPinned\|<== monitors" "$dir/app.log" || true)
+  row "$mode" \
+    "$(awk -v n="$slow_ok" -v d="$DURATION" 'BEGIN { printf "%.1f", n / d }')" \
+    "$fast_ok" "$fast_err" "$p50" "$p95" "$p99" "$pinned"
+
+  kill "$PID" 2>/dev/null || true
+  wait "$PID" 2>/dev/null || true
+  PID=""
+}
+
+echo "slow: $SLOW_CONCURRENCY x balance-series for ${DURATION}s; fast: $FAST_REQUESTS x /api/accounts at $FAST_CONCURRENCY"
+row "mode" "slow req/s" "fast ok" "fast err" "p50 ms" "p95 ms" "p99 ms" "pinned"
+run platform false
+if [ "$VIRTUAL" = true ]; then
+  run virtual true
+fi
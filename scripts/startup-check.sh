@@ -0,0 +1,60 @@
+#!/usr/bin/env bash
+# Startup-time regression check for the fast-start build.
+# Measures launch to first successful GET /api/accounts and fails above the budget.
+#
+#   mvn -Pfast-start package -DskipTests
+#   STARTUP_BUDGET_MS=12000 scripts/startup-check.sh
+set -euo pipefail
+
+BUDGET_MS=${STARTUP_BUDGET_MS:-15000}
+PORT=${STARTUP_PORT:-18080}
+RUNS=${STARTUP_RUNS:-3}
+DIR="$(cd "$(dirname "$0")/.." && pwd)/target/fast-start"
+JAR=$(ls "$DIR"/expense-tracker-backend-*-fast-start.jar 2>/dev/null | head -1)
+
+if [ -z "$JAR" ]; then
+  echo "❌ No fast-start jar in $DIR, run: mvn -Pfast-start package -DskipTests" >&2
+  exit 1
+fi
+
+CDS=()
+if [ -f "$DIR/app.jsa" ]; then
+  CDS=(-XX:SharedArchiveFile=app.jsa -Xshare:auto)
+fi
+
+# The CDS archive records the class path as built, so launch from the fast-start directory
+WORK=$(mktemp -d)
+PID=""
+trap '[ -n "$PID" ] && kill "$PID" 2>/dev/null || true; rm -rf "$WORK"' EXIT
+cd "$DIR"
+
+best=""
+for run in $(seq 1 "$RUNS"); do
+  # The first run starts on an empty database; later runs reuse it like a restart would
+  start=$(date +%s%N)
+  java "${CDS[@]}" -jar "$(basename "$JAR")" --server.port="$PORT" --spring.profiles.active=dev,fast \
+    --spring.datasource.url="jdbc:sqlite:$WORK/expenses.db" \
+    --app.fast-start.flyway-checksum-file="$WORK/.flyway-checksum" > "$WORK/app-$run.log" 2>&1 &
+  PID=$!
+  until curl -sf -o /dev/null "http://localhost:$PORT/api/accounts"; do
+    if ! kill -0 "$PID" 2>/dev/null; then
+      echo "❌ Backend exited during startup, see log:" >&2
+      tail -20 "$WORK/app-$run.log" >&2
+      exit 1
+    fi
+    sleep 0.05
+  done
+  elapsed=$(( ($(date +%s%N) - start) / 1000000 ))
+  kill "$PID"
+  wait "$PID" 2>/dev/null || true
+  echo "Run $run: first /api/accounts after ${elapsed} ms"
+  if [ -z "$best" ] || [ "$elapsed" -lt "$best" ]; then
+    best=$elapsed
+  fi
+done
+
+if [ "$best" -gt "$BUDGET_MS" ]; then
+  echo "❌ Startup regressed: best ${best} ms > budget ${BUDGET_MS} ms"
+  exit 1
+fi
+echo "✅ Startup OK: best ${best} ms (budget ${BUDGET_MS} ms)"
@@ -0,0 +1,99 @@
+package com.expensetracker.config;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.Location;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Startup shortcuts used by the "fast" profile: beans with schedules stay eager under
+ * lazy initialization, and Flyway validation is skipped while the migration scripts
+ * and database are the same as on the last successful start.
+ */
+@Configuration
+public class FastStartConfig {
+
+    @Value("${app.fast-start.flyway-checksum-file:.flyway-checksum}")
+    private String checksumFile;
+
+    // Schedules are registered when a bean is created, so lazy scheduled beans would never run
+    @Bean
+    static LazyInitializationExcludeFilter scheduledBeansExcludeFilter() {
+        return (beanName, definition, type) -> type != null && !MethodIntrospector.selectMethods(ClassUtils.getUserClass(type),
+            (MethodIntrospector.MetadataLookup<Scheduled>) method -> AnnotatedElementUtils.findMergedAnnotation(method, Scheduled.class)).isEmpty();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.fast-start.skip-unchanged-flyway-validate", havingValue = "true")
+    public FlywayMigrationStrategy checksumGatedMigration() {
+        return flyway -> {
+            String checksum = migrationChecksum(flyway);
+            Path marker = Path.of(checksumFile);
+            try {
+                if (Files.exists(marker) && checksum.equals(Files.readString(marker).trim())) {
+                    // Pending migrations (e.g. on a fresh database) are still applied
+                    Flyway.configure(flyway.getConfiguration().getClassLoader())
+                        .configuration(flyway.getConfiguration())
+                        .validateOnMigrate(false)
+                        .load()
+                        .migrate();
+                    return;
+                }
+                flyway.migrate();
+                Files.writeString(marker, checksum);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    // Hash of the database URL plus every migration script's name and content
+    private static String migrationChecksum(Flyway flyway) {
+        try (Connection connection = flyway.getConfiguration().getDataSource().getConnection()) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(connection.getMetaData().getURL().getBytes(StandardCharsets.UTF_8));
+
+            PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver(flyway.getConfiguration().getClassLoader());
+            List<Resource> scripts = new ArrayList<>();
+            for (Location location : flyway.getConfiguration().getLocations()) {
+                String prefix = location.isClassPath() ? "classpath*:" : "file:";
+                scripts.addAll(Arrays.asList(resolver.getResources(prefix + location.getPath() + "/**/*.sql")));
+            }
+            scripts.sort(Comparator.comparing(Resource::getFilename));
+            for (Resource script : scripts) {
+                digest.update(script.getFilename().getBytes(StandardCharsets.UTF_8));
+                digest.update(script.getContentAsByteArray());
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (SQLException | NoSuchAlgorithmException e) {
+            throw new RuntimeException("Failed to compute migration checksum", e);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.expensetracker.config;
+
+import com.expensetracker.service.ShardRouter;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Routes connections to one SQLite file per shard, chosen by the shard bound to the
+ * current thread (shard 0 when none is bound).
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private final List<HikariDataSource> shards;
+
+    // connections wraps each pool as it is handed out to callers (e.g. with a permit limit)
+    public ShardRoutingDataSource(List<HikariDataSource> shards, Function<HikariDataSource, DataSource> connections) {
+        this.shards = shards;
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            targets.put(i, connections.apply(shards.get(i)));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(targets.get(0));
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardRouter.currentShard();
+    }
+
+    public int shardCount() {
+        return shards.size();
+    }
+
+    // Database file of a shard, for ATTACH
+    public String shardFile(int shard) {
+        String url = shards.get(shard).getJdbcUrl().substring("jdbc:sqlite:".length());
+        int query = url.indexOf('?');
+        return query >= 0 ? url.substring(0, query) : url;
+    }
+
+    @Override
+    public void close() {
+        shards.forEach(HikariDataSource::close);
+    }
+}
@@ -0,0 +1,88 @@
+package com.expensetracker.config;
+
+import com.expensetracker.web.ShardRoutingInterceptor;
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.output.MigrateResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+public class ShardingConfig implements WebMvcConfigurer {
+
+    // Keeps ids unique across shards so users can move without renumbering their rows
+    private static final long ID_RANGE_PER_SHARD = 1_000_000_000_000L;
+    private static final List<String> AUTOINCREMENT_TABLES = List.of("users", "accounts", "categories", "transactions", "category_rules");
+    // The demo user V1 seeds into every database; the router pins it to shard 0
+    private static final long SEED_USER_ID = 1L;
+
+    @Autowired
+    private ShardRoutingInterceptor shardRoutingInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // Admin endpoints act on users (or shards) explicitly
+        registry.addInterceptor(shardRoutingInterceptor).addPathPatterns("/api/**").excludePathPatterns("/api/admin/**");
+    }
+
+    // Sharded SQLite: shard 0 is the regular database, the others follow app.shards.url-pattern
+    @Bean
+    @Primary
+    @ConditionalOnExpression("${app.shards.count:1} > 1")
+    public static ShardRoutingDataSource shardedDataSource(
+            @Value("${spring.datasource.url}") String primaryUrl,
+            @Value("${app.shards.count}") int count,
+            @Value("${app.shards.url-pattern:jdbc:sqlite:expenses-shard-%d.db}") String urlPattern,
+            @Value("${app.shards.pool-size:4}") int poolSize,
+            @Value("${spring.flyway.locations}") String[] migrationLocations,
+            Environment environment) {
+        List<HikariDataSource> shards = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String url = i == 0 ? primaryUrl : String.format(urlPattern, i);
+            HikariDataSource shard = new HikariDataSource();
+            shard.setPoolName("shard-" + i);
+            shard.setJdbcUrl(url + (url.contains("?") ? "&" : "?") + "journal_mode=WAL&foreign_keys=true&busy_timeout=5000");
+            shard.setMaximumPoolSize(poolSize);
+            shards.add(shard);
+
+            MigrateResult migrated = Flyway.configure().dataSource(shard).locations(migrationLocations).load().migrate();
+            if (i > 0) {
+                JdbcTemplate jdbcTemplate = new JdbcTemplate(shard);
+                // Only on a shard created just now: later the user may have been moved here
+                if (migrated.initialSchemaVersion == null) {
+                    dropSeedRows(jdbcTemplate);
+                }
+                reserveIdRange(jdbcTemplate, i * ID_RANGE_PER_SHARD);
+            }
+        }
+        boolean permits = VirtualThreadsConfig.isActive(environment);
+        return new ShardRoutingDataSource(shards, shard -> permits ? VirtualThreadsConfig.wrap(shard, environment) : shard);
+    }
+
+    private static void dropSeedRows(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.update("DELETE FROM categories WHERE user_id = ?", SEED_USER_ID);
+        jdbcTemplate.update("DELETE FROM accounts WHERE user_id = ?", SEED_USER_ID);
+        jdbcTemplate.update("DELETE FROM users WHERE id = ?", SEED_USER_ID);
+    }
+
+    private static void reserveIdRange(JdbcTemplate jdbcTemplate, long start) {
+        for (String table : AUTOINCREMENT_TABLES) {
+            jdbcTemplate.update("""
+                INSERT INTO sqlite_sequence(name, seq)
+                SELECT ?, ? WHERE NOT EXISTS (SELECT 1 FROM sqlite_sequence WHERE name = ?)
+                """, table, start, table);
+            jdbcTemplate.update("UPDATE sqlite_sequence SET seq = ? WHERE name = ? AND seq < ?", start, table, start);
+        }
+    }
+}
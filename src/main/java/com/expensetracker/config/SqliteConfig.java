@@ -3,11 +3,13 @@ package com.expensetracker.config;
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.Profile;
 import org.springframework.jdbc.core.JdbcTemplate;
 
 @Configuration
 @Profile("dev")
+@Lazy(false)
 public class SqliteConfig {
 
     @Autowired
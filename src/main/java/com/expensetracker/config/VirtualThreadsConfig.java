@@ -0,0 +1,51 @@
+package com.expensetracker.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * Opt-in virtual threads (spring.threads.virtual.enabled=true, Java 21 or later): Spring Boot
+ * then serves requests on virtual threads, and report and advisor queries fan out on them.
+ * Connections are capped by a JdbcPermitDataSource in front of each pool. On older runtimes
+ * the setting is ignored and nothing here changes.
+ */
+@Configuration
+public class VirtualThreadsConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadsConfig.class);
+
+    public static boolean isActive(Environment environment) {
+        return Threading.VIRTUAL.isActive(environment);
+    }
+
+    // Static so it is registered before the data source is created
+    @Bean
+    public static BeanPostProcessor jdbcPermitPostProcessor(Environment environment) {
+        if (environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false) && !isActive(environment)) {
+            log.warn("spring.threads.virtual.enabled needs Java 21 or later; running on platform threads");
+        }
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                // Sharded pools are not beans; ShardingConfig wraps those itself
+                if (bean instanceof HikariDataSource pool && isActive(environment)) {
+                    return wrap(pool, environment);
+                }
+                return bean;
+            }
+        };
+    }
+
+    static JdbcPermitDataSource wrap(HikariDataSource pool, Environment environment) {
+        int permits = JdbcPermitDataSource.permitsFor(pool);
+        log.info("Database permits for {}: {}", pool.getPoolName() != null ? pool.getPoolName() : "pool", permits);
+        return new JdbcPermitDataSource(pool, permits,
+            environment.getProperty("app.jdbc.permit-timeout-ms", Long.class, 30_000L));
+    }
+}
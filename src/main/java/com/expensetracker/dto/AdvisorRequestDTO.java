@@ -11,4 +11,4 @@ public record AdvisorRequestDTO(
     @NotNull @DecimalMin("0.01") BigDecimal price,
     @Pattern(regexp = "\\d{4}-\\d{2}-\\d{2}") String targetDate,
     String priority
-) {}
+) implements UserScoped {}
@@ -0,0 +1,17 @@
+package com.expensetracker.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+
+// Filter for bulk operations plus the target of a recategorize or move
+public record BulkOperationDTO(
+    @NotNull Long userId,
+    @Pattern(regexp = "\\d{4}-\\d{2}-\\d{2}") String from,
+    @Pattern(regexp = "\\d{4}-\\d{2}-\\d{2}") String to,
+    Long accountId,
+    Long categoryId,
+    String notePattern,
+    Long targetCategoryId,
+    Long targetAccountId,
+    boolean dryRun
+) implements UserScoped {}
@@ -9,8 +9,8 @@ import java.math.BigDecimal;
 public record ExpenseCreateDTO(
     @NotNull Long userId,
     @NotNull Long accountId,
-    @NotNull Long categoryId,
+    Long categoryId, // null lets the user's categorization rules choose
     @NotNull @Pattern(regexp = "\\d{4}-\\d{2}-\\d{2}") String date,
     @NotNull @DecimalMin("0.01") BigDecimal amount,
     String note
-) {}
+) implements UserScoped {}
@@ -13,4 +13,4 @@ public record IncomeCreateDTO(
     @NotNull @Pattern(regexp = "\\d{4}-\\d{2}-\\d{2}") String date,
     @NotNull @DecimalMin("0.01") BigDecimal amount,
     String note
-) {}
+) implements UserScoped {}
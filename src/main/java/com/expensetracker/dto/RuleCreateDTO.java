@@ -0,0 +1,19 @@
+package com.expensetracker.dto;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.math.BigDecimal;
+
+// Conditions left null are not checked; amounts are compared as absolute values
+public record RuleCreateDTO(
+    @NotNull Long userId,
+    @NotNull Long categoryId,
+    @Size(max = 255) String keyword,
+    @Size(max = 255) String pattern,
+    @DecimalMin("0") BigDecimal minAmount,
+    @DecimalMin("0") BigDecimal maxAmount,
+    Long accountId,
+    Integer priority
+) implements UserScoped {}
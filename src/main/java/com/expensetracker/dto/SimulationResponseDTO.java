@@ -0,0 +1,16 @@
+package com.expensetracker.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+public record SimulationResponseDTO(
+    String targetDate,
+    int paths,
+    int completedPaths,
+    double probability,
+    boolean recommended,
+    List<Band> bands,
+    List<String> notes
+) {
+    public record Band(String date, BigDecimal p10, BigDecimal p50, BigDecimal p90) {}
+}
@@ -14,4 +14,4 @@ public record TransferCreateDTO(
     @NotNull @DecimalMin("0.00") BigDecimal fee,
     @NotNull @Pattern(regexp = "\\d{4}-\\d{2}-\\d{2}") String date,
     String note
-) {}
+) implements UserScoped {}
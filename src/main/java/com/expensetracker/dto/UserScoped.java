@@ -0,0 +1,6 @@
+package com.expensetracker.dto;
+
+// Request bodies that belong to a single user; used to route the request to the user's shard
+public interface UserScoped {
+    Long userId();
+}
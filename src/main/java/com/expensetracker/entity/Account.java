@@ -25,9 +25,13 @@ public class Account {
     @Column(nullable = false)
     private String type;
     
-    @Column(name = "opening_balance", nullable = false, precision = 18, scale = 2)
+    @Column(name = "opening_balance", nullable = false)
+    @Convert(converter = MoneyConverter.class)
     private BigDecimal openingBalance;
     
+    @Column(nullable = false, length = 3)
+    private String currency = "IDR";
+    
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
@@ -50,6 +54,9 @@ public class Account {
     public BigDecimal getOpeningBalance() { return openingBalance; }
     public void setOpeningBalance(BigDecimal openingBalance) { this.openingBalance = openingBalance; }
     
+    public String getCurrency() { return currency; }
+    public void setCurrency(String currency) { this.currency = currency; }
+    
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
 }
@@ -0,0 +1,34 @@
+package com.expensetracker.entity;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Money amounts are stored as whole minor units (hundredths) in INTEGER/BIGINT columns, so
+ * SQL sums are exact on every vendor and aggregations can run on primitive longs. BigDecimal
+ * is only used at the edges: entities, request DTOs and response bodies.
+ */
+public final class Money {
+
+    public static final int SCALE = 2;
+
+    private Money() {}
+
+    public static long toMinor(BigDecimal amount) {
+        return amount.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal fromMinor(long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+
+    // For the floating-point models (forecast, anomaly statistics)
+    public static double toDouble(long minor) {
+        return minor / 100.0;
+    }
+
+    // Amount times an FX rate, rounded to the nearest minor unit
+    public static long convert(long minor, double rate) {
+        return rate == 1.0 ? minor : Math.round(minor * rate);
+    }
+}
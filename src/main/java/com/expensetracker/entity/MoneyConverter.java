@@ -0,0 +1,21 @@
+package com.expensetracker.entity;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.math.BigDecimal;
+
+// Maps BigDecimal entity fields to minor-unit columns
+@Converter
+public class MoneyConverter implements AttributeConverter<BigDecimal, Long> {
+
+    @Override
+    public Long convertToDatabaseColumn(BigDecimal amount) {
+        return amount != null ? Money.toMinor(amount) : null;
+    }
+
+    @Override
+    public BigDecimal convertToEntityAttribute(Long minor) {
+        return minor != null ? Money.fromMinor(minor) : null;
+    }
+}
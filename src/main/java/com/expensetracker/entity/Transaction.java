@@ -2,6 +2,7 @@ package com.expensetracker.entity;
 
 import jakarta.persistence.*;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -37,7 +38,8 @@ public class Transaction {
     @Column(nullable = false)
     private LocalDate date;
     
-    @Column(nullable = false, precision = 18, scale = 2)
+    @Column(nullable = false)
+    @Convert(converter = MoneyConverter.class)
     private BigDecimal amount;
     
     private String note;
@@ -48,6 +50,11 @@ public class Transaction {
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
+    // Set on create responses only: amount is unusual for the category
+    @Transient
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean unusual;
+    
     // Default constructor
     public Transaction() {}
     
@@ -81,4 +88,7 @@ public class Transaction {
     
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    
+    public Boolean getUnusual() { return unusual; }
+    public void setUnusual(Boolean unusual) { this.unusual = unusual; }
 }
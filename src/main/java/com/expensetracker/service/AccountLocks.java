@@ -0,0 +1,104 @@
+package com.expensetracker.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serializes balance-affecting writes per account for the rest of the current transaction.
+ * On PostgreSQL the account rows are locked with SELECT ... FOR UPDATE, which also holds
+ * across application instances; on SQLite each account maps to one of a fixed set of lock
+ * stripes. Either way locks are taken in ascending order, so two writers touching the same
+ * pair of accounts (a transfer each way) cannot deadlock, and writers on different accounts
+ * do not wait for each other. Creates lock the accounts they write; bulk changes and imports
+ * lock every account they may touch, since they move balances without going through the
+ * sufficient-funds check.
+ */
+@Component
+class AccountLocks {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.db.vendor}")
+    private String vendor;
+
+    @Value("${app.account-locks.stripes:256}")
+    private int stripeCount;
+
+    @Value("${app.account-locks.timeout-ms:5000}")
+    private long timeoutMs;
+
+    private ReentrantLock[] stripes;
+
+    @PostConstruct
+    void createStripes() {
+        stripes = new ReentrantLock[stripeCount];
+        Arrays.setAll(stripes, i -> new ReentrantLock());
+    }
+
+    // Call first in the transaction, before anything is read that the lock should protect
+    void lock(Long... accountIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Account locks need an active transaction");
+        }
+        long[] ids = Arrays.stream(accountIds).mapToLong(Long::longValue).sorted().distinct().toArray();
+        if (ids.length == 0) {
+            return;
+        }
+        if ("postgres".equals(vendor)) {
+            String placeholders = String.join(",", Collections.nCopies(ids.length, "?"));
+            jdbcTemplate.queryForList("SELECT id FROM accounts WHERE id IN (" + placeholders + ") ORDER BY id FOR UPDATE",
+                Long.class, Arrays.stream(ids).boxed().toArray());
+            return;
+        }
+
+        int[] indexes = Arrays.stream(ids).mapToInt(id -> (int) Math.floorMod(id, (long) stripeCount)).sorted().distinct().toArray();
+        ReentrantLock[] held = new ReentrantLock[indexes.length];
+        int count = 0;
+        try {
+            for (int index : indexes) {
+                ReentrantLock stripe = stripes[index];
+                if (!stripe.tryLock(timeoutMs, TimeUnit.MILLISECONDS)) {
+                    throw new RuntimeException("Account is busy, try again");
+                }
+                held[count++] = stripe;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for account lock");
+        } finally {
+            if (count < held.length) {
+                unlock(held, count);
+            }
+        }
+
+        // afterCompletion runs on the thread that committed or rolled back, which holds the locks
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                unlock(held, held.length);
+            }
+        });
+    }
+
+    // All of the user's accounts, for writes whose accounts come from a filter
+    void lockAllOf(Long userId) {
+        lock(jdbcTemplate.queryForList("SELECT id FROM accounts WHERE user_id = ?", Long.class, userId).toArray(Long[]::new));
+    }
+
+    private static void unlock(ReentrantLock[] held, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            held[i].unlock();
+        }
+    }
+}
@@ -2,42 +2,59 @@ package com.expensetracker.service;
 
 import com.expensetracker.dto.AdvisorRequestDTO;
 import com.expensetracker.dto.AdvisorResponseDTO;
+import com.expensetracker.dto.SimulationResponseDTO;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class AdvisorService {
 
     @Autowired
-    private JdbcTemplate jdbcTemplate;
+    private ForecastService forecastService;
+
+    @Autowired
+    private SimulationService simulationService;
+
+    @Autowired
+    private FanOut fanOut;
+
+    @Value("${app.forecast.horizon-days:365}")
+    private int horizonDays;
+
+    @Value("${app.simulation.history-days:180}")
+    private int simulationHistoryDays;
+
+    @Value("${app.simulation.max-days:1095}")
+    private int simulationMaxDays;
 
     public AdvisorResponseDTO compute(AdvisorRequestDTO request) {
         Long userId = request.userId();
         BigDecimal price = request.price();
         
-        // Get current month's income
+        // Month-to-date totals and smoothed daily flows, maintained incrementally on writes
+        ForecastService.Forecast forecast = forecastService.forecast(userId);
+        
         YearMonth currentMonth = YearMonth.now();
-        LocalDate monthStart = currentMonth.atDay(1);
         LocalDate monthEnd = currentMonth.atEndOfMonth();
-        
-        BigDecimal incomeMonth = getMonthlyIncome(userId, monthStart, monthEnd);
-        
-        // Get spent to date (current month)
         LocalDate today = LocalDate.now();
-        BigDecimal spentToDate = getSpentToDate(userId, monthStart, today);
         
-        // Calculate daily burn rate (last 30 days)
-        LocalDate thirtyDaysAgo = today.minusDays(30);
-        BigDecimal dailyBurn = getDailyBurnRate(userId, thirtyDaysAgo, today);
+        BigDecimal incomeMonth = money(forecast.monthIncome());
+        BigDecimal spentToDate = money(forecast.monthSpent());
+        
+        // Expected daily spending over the coming week (weekly seasonality)
+        BigDecimal dailyBurn = money(forecast.dailyBurn(today));
         
         // Calculate days left in month
         int daysLeft = monthEnd.getDayOfYear() - today.getDayOfYear();
@@ -57,60 +74,143 @@ public class AdvisorService {
         boolean canBuyToday = safeToSpendToday.compareTo(price) >= 0;
         
         // Calculate earliest date
-        String earliestDate;
-        if (canBuyToday) {
-            earliestDate = today.toString();
-        } else {
-            // Set to 25th of current/next month (payday placeholder)
-            YearMonth nextMonth = currentMonth.plusMonths(1);
-            earliestDate = nextMonth.atDay(25).toString();
-        }
+        LocalDate earliest = canBuyToday
+            ? today
+            : projectEarliestDate(forecast, today, safeToSpendToday.doubleValue(), price.doubleValue(),
+                daysLeft, dailyBurn.doubleValue());
+        String earliestDate = earliest != null ? earliest.toString() : null;
         
         // Generate notes
-        List<String> notes = generateNotes(incomeMonth, spentToDate, dailyBurn, daysLeft, buffer, safeToSpendToday, price);
+        List<String> notes = generateNotes(incomeMonth, spentToDate, dailyBurn, daysLeft, buffer, safeToSpendToday, price, earliest);
         
         return new AdvisorResponseDTO(canBuyToday, earliestDate, safeToSpendToday, notes);
     }
     
-    private BigDecimal getMonthlyIncome(Long userId, LocalDate from, LocalDate to) {
-        String sql = """
-            SELECT COALESCE(SUM(amount), 0) as total
-            FROM transactions 
-            WHERE user_id = ? AND date BETWEEN ? AND ? 
-              AND type IN ('INCOME', 'TRANSFER_IN')
-            """;
-        
-        Map<String, Object> result = jdbcTemplate.queryForMap(sql, userId, from.toString(), to.toString());
-        return new BigDecimal(result.get("total").toString());
+    // Walks the forecast day by day: each projected day adds its expected net flow and
+    // releases that day's share of the burn already reserved in safe-to-spend
+    private LocalDate projectEarliestDate(ForecastService.Forecast forecast, LocalDate today, double safeToSpend,
+                                          double price, int daysLeft, double dailyBurn) {
+        double projected = safeToSpend;
+        for (int day = 1; day <= horizonDays; day++) {
+            LocalDate date = today.plusDays(day);
+            projected += forecast.netFlow(date);
+            if (day <= daysLeft) {
+                projected += dailyBurn;
+            }
+            if (projected >= price) {
+                return date;
+            }
+        }
+        return null;
     }
     
-    private BigDecimal getSpentToDate(Long userId, LocalDate from, LocalDate to) {
-        String sql = """
-            SELECT COALESCE(SUM(CASE WHEN type IN ('EXPENSE', 'TRANSFER_OUT') THEN -amount ELSE 0 END), 0) as total
-            FROM transactions 
-            WHERE user_id = ? AND date BETWEEN ? AND ? 
-              AND type IN ('EXPENSE', 'TRANSFER_OUT')
-            """;
-        
-        Map<String, Object> result = jdbcTemplate.queryForMap(sql, userId, from.toString(), to.toString());
-        return new BigDecimal(result.get("total").toString());
+    public SimulationResponseDTO simulate(AdvisorRequestDTO request) {
+        if (request.targetDate() == null) {
+            throw new RuntimeException("targetDate is required for simulation");
+        }
+        LocalDate today = LocalDate.now();
+        LocalDate target = LocalDate.parse(request.targetDate());
+        int days = (int) ChronoUnit.DAYS.between(today, target);
+        if (days <= 0 || days > simulationMaxDays) {
+            throw new RuntimeException("targetDate must be within " + simulationMaxDays + " days after today");
+        }
+        
+        // The history scan runs beside the forecast (which may rebuild from the database)
+        CompletableFuture<ForecastService.DailyHistory> historyFork = fanOut.fork(request.userId(),
+            () -> forecastService.history(request.userId(), today.minusDays(simulationHistoryDays), today.minusDays(1)));
+        ForecastService.Forecast forecast = forecastService.forecast(request.userId());
+        ForecastService.DailyHistory history = FanOut.join(historyFork);
+        
+        // Bootstrap pools: historical daily outflow by weekday, and completed monthly incomes
+        List<List<Double>> byWeekday = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            byWeekday.add(new ArrayList<>());
+        }
+        Map<YearMonth, Double> incomeByMonth = new TreeMap<>();
+        for (int i = 0; i < history.outflow().length; i++) {
+            LocalDate date = history.from().plusDays(i);
+            byWeekday.get(date.getDayOfWeek().ordinal()).add(history.outflow()[i]);
+            incomeByMonth.merge(YearMonth.from(date), history.income()[i], Double::sum);
+        }
+        double[][] outflowPools = new double[7][];
+        for (int i = 0; i < 7; i++) {
+            outflowPools[i] = byWeekday.get(i).isEmpty()
+                ? new double[] { 0 }
+                : byWeekday.get(i).stream().mapToDouble(Double::doubleValue).toArray();
+        }
+        // The first and current months are only partly inside the window
+        incomeByMonth.remove(YearMonth.from(history.from()));
+        incomeByMonth.remove(YearMonth.from(today));
+        double[] incomes = incomeByMonth.values().stream().mapToDouble(Double::doubleValue).toArray();
+        if (incomes.length == 0 && forecast.incomeLevel() > 0) {
+            incomes = new double[] { forecast.incomeLevel() };
+        }
+        
+        // Simulated days run from tomorrow to the target date; bands are weekly plus the target
+        int[] dayOfWeek = new int[days];
+        byte[] payday = new byte[days];
+        List<Integer> checkpointDays = new ArrayList<>();
+        for (int d = 0; d < days; d++) {
+            LocalDate date = today.plusDays(d + 1);
+            dayOfWeek[d] = date.getDayOfWeek().ordinal();
+            if (forecast.payday() > 0 && date.getDayOfMonth() == Math.min(forecast.payday(), date.lengthOfMonth())) {
+                payday[d] = (byte) (YearMonth.from(date).equals(forecast.month()) ? 1 : 2);
+            }
+            if (d % 7 == 6 || d == days - 1) {
+                checkpointDays.add(d);
+            }
+        }
+        int[] checkpoints = checkpointDays.stream().mapToInt(Integer::intValue).toArray();
+        
+        double start = forecast.monthIncome() - forecast.monthSpent();
+        SimulationService.Result result = simulationService.run(start, dayOfWeek, payday, outflowPools,
+            incomes, forecast.monthIncome(), checkpoints, request.price().doubleValue());
+        
+        List<SimulationResponseDTO.Band> bands = new ArrayList<>();
+        for (int c = 0; c < checkpoints.length; c++) {
+            double[] p = result.percentiles()[c];
+            bands.add(new SimulationResponseDTO.Band(today.plusDays(checkpoints[c] + 1).toString(),
+                money(p[0]), money(p[1]), money(p[2])));
+        }
+        
+        double threshold = confidenceFor(request.priority());
+        boolean recommended = result.probability() >= threshold;
+        
+        List<String> notes = new ArrayList<>();
+        notes.add("Simulated paths: " + result.completed() + " of " + result.paths());
+        notes.add("Probability affordable by " + target + ": " + Math.round(result.probability() * 100) + "%");
+        notes.add("Required confidence (" + (request.priority() != null ? request.priority() : "medium") + " priority): "
+            + Math.round(threshold * 100) + "%");
+        if (result.completed() < result.paths()) {
+            notes.add("Simulation stopped at the deadline; result is based on the completed paths");
+        }
+        
+        return new SimulationResponseDTO(target.toString(), result.paths(), result.completed(),
+            result.probability(), recommended, bands, notes);
     }
     
-    private BigDecimal getDailyBurnRate(Long userId, LocalDate from, LocalDate to) {
-        String sql = """
-            SELECT COALESCE(AVG(CASE WHEN type IN ('EXPENSE', 'TRANSFER_OUT') THEN -amount ELSE 0 END), 0) as avg_daily
-            FROM transactions 
-            WHERE user_id = ? AND date BETWEEN ? AND ? 
-              AND type IN ('EXPENSE', 'TRANSFER_OUT')
-            """;
-        
-        Map<String, Object> result = jdbcTemplate.queryForMap(sql, userId, from.toString(), to.toString());
-        return new BigDecimal(result.get("avg_daily").toString());
+    // Higher-priority purchases are recommended at a lower confidence
+    private static double confidenceFor(String priority) {
+        if (priority == null) {
+            return 0.75;
+        }
+        return switch (priority.toLowerCase()) {
+            case "high" -> 0.6;
+            case "low" -> 0.9;
+            default -> 0.75;
+        };
+    }
+    
+    private static BigDecimal money(double value) {
+        if (Double.isNaN(value)) {
+            return null;
+        }
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
     }
     
     private List<String> generateNotes(BigDecimal incomeMonth, BigDecimal spentToDate, 
                                      BigDecimal dailyBurn, int daysLeft, BigDecimal buffer,
-                                     BigDecimal safeToSpendToday, BigDecimal price) {
+                                     BigDecimal safeToSpendToday, BigDecimal price, LocalDate earliest) {
         List<String> notes = new ArrayList<>();
         
         notes.add("Monthly income: " + incomeMonth);
@@ -122,8 +222,10 @@ public class AdvisorService {
         
         if (safeToSpendToday.compareTo(price) >= 0) {
             notes.add("Purchase is safe to make today");
+        } else if (earliest != null) {
+            notes.add("Projected to be affordable on " + earliest);
         } else {
-            notes.add("Consider waiting until next payday");
+            notes.add("Not affordable within " + horizonDays + " days at the current pace");
         }
         
         return notes;
@@ -0,0 +1,320 @@
+package com.expensetracker.service;
+
+import com.expensetracker.entity.Money;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Flags unusually large expenses per (user, category) from a streaming quantile
+ * sketch plus EWMA mean/variance, kept in memory and flushed to expense_sketches.
+ * Amounts are in the base currency, so accounts in different currencies share a history.
+ */
+@Service
+public class AnomalyService {
+
+    private static final Logger log = LoggerFactory.getLogger(AnomalyService.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private FxRateService fxRateService;
+
+    // Amounts above this quantile of the category's history are candidates
+    @Value("${app.anomaly.percentile:0.95}")
+    private double percentile;
+
+    // ...and must also be this many EWMA standard deviations above the EWMA mean (0 disables)
+    @Value("${app.anomaly.min-z-score:2.0}")
+    private double minZScore;
+
+    @Value("${app.anomaly.min-samples:10}")
+    private int minSamples;
+
+    @Value("${app.anomaly.ewma-alpha:0.1}")
+    private double ewmaAlpha;
+
+    @Value("${app.anomaly.max-categories-per-user:32}")
+    private int maxCategoriesPerUser;
+
+    @Value("${app.anomaly.max-bins:256}")
+    private int maxBins;
+
+    // Users kept in memory; the least recently used clean ones are dropped after a flush
+    @Value("${app.anomaly.max-users:10000}")
+    private int maxUsers;
+
+    private final Map<Long, UserStats> users = new ConcurrentHashMap<>();
+
+    // Dirty stats evicted from memory before they were flushed
+    private final Map<List<Long>, CategoryStats> evicted = new ConcurrentHashMap<>();
+
+    /**
+     * Returns whether the expense is unusual for the category, then records it once the
+     * surrounding transaction commits (immediately when there is none). An expense in a
+     * currency without any rate is neither checked nor recorded.
+     */
+    public boolean observe(Long userId, Long categoryId, BigDecimal amount, String currency, LocalDate date) {
+        FxRateIndex rates = fxRateService.index();
+        if (!rates.hasRate(currency)) {
+            return false;
+        }
+        double value = fxRateService.toBase(rates, amount, currency, date).doubleValue();
+        UserStats userStats = users.computeIfAbsent(userId, UserStats::new);
+        boolean unusual = userStats.isUnusual(categoryId, value);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    userStats.record(categoryId, value);
+                }
+            });
+        } else {
+            userStats.record(categoryId, value);
+        }
+        return unusual;
+    }
+
+    @Scheduled(fixedDelayString = "${app.anomaly.flush-interval-ms:60000}")
+    @PreDestroy
+    public void flush() {
+        // Stats are only marked clean once their shard's write succeeded, so after a failed
+        // write they stay dirty (and evicted ones stay queued) for the next flush
+        List<Pending> pending = new ArrayList<>();
+        evicted.forEach((key, stats) -> pending.add(new Pending(key.get(0), key.get(1), stats, stats.version, stats.serialize())));
+        for (UserStats userStats : users.values()) {
+            userStats.collectDirty(pending);
+        }
+        String sql = """
+            INSERT INTO expense_sketches(user_id, category_id, data) VALUES (?, ?, ?)
+            ON CONFLICT (user_id, category_id) DO UPDATE SET data = excluded.data
+            """;
+        Map<Integer, List<Pending>> byShard = new HashMap<>();
+        for (Pending entry : pending) {
+            byShard.computeIfAbsent(shardRouter.shardOf(entry.userId()), shard -> new ArrayList<>()).add(entry);
+        }
+        byShard.forEach((shard, entries) -> {
+            List<Object[]> rows = new ArrayList<>(entries.size());
+            for (Pending entry : entries) {
+                rows.add(new Object[] { entry.userId(), entry.categoryId(), entry.data() });
+            }
+            try {
+                shardRouter.onShard(shard, () -> jdbcTemplate.batchUpdate(sql, rows));
+            } catch (RuntimeException e) {
+                log.warn("Could not flush {} expense sketches to shard {}, retrying on the next flush", rows.size(), shard, e);
+                return;
+            }
+            for (Pending entry : entries) {
+                entry.stats().flushed = entry.version();
+                evicted.remove(List.of(entry.userId(), entry.categoryId()), entry.stats());
+            }
+        });
+        evictIdleUsers();
+    }
+
+    private void evictIdleUsers() {
+        int excess = users.size() - maxUsers;
+        if (excess <= 0) {
+            return;
+        }
+        List<UserStats> idle = new ArrayList<>(users.values());
+        idle.sort(Comparator.comparingLong(userStats -> userStats.lastUsed));
+        for (UserStats userStats : idle) {
+            if (excess <= 0) {
+                break;
+            }
+            // Dirty users wait until their stats are written
+            if (userStats.retireIfClean()) {
+                users.remove(userStats.userId, userStats);
+                excess--;
+            }
+        }
+    }
+
+    // Unflushed stats describe the replaced data, so they are dropped rather than flushed
+    @EventListener
+    public void onRestore(BackupService.DatabaseRestoredEvent event) {
+        users.clear();
+        evicted.clear();
+    }
+
+    private CategoryStats load(Long userId, Long categoryId) {
+        CategoryStats pending = evicted.remove(List.of(userId, categoryId));
+        if (pending != null) {
+            return pending;
+        }
+        List<byte[]> persisted = jdbcTemplate.query(
+            "SELECT data FROM expense_sketches WHERE user_id = ? AND category_id = ?",
+            (rs, i) -> rs.getBytes("data"), userId, categoryId);
+        if (!persisted.isEmpty()) {
+            return CategoryStats.deserialize(persisted.get(0), maxBins);
+        }
+
+        // First time this category is seen: build from history once, then persist
+        CategoryStats stats = new CategoryStats(new QuantileSketch(maxBins));
+        Map<Long, String> currencies = fxRateService.accountCurrencies(userId);
+        FxRateIndex rates = fxRateService.index();
+        jdbcTemplate.query("""
+            SELECT date, account_id, amount FROM transactions
+            WHERE user_id = ? AND category_id = ? AND type = 'EXPENSE'
+            ORDER BY date, id
+            """, rs -> {
+            String currency = currencies.get(rs.getLong("account_id"));
+            if (!rates.hasRate(currency)) {
+                return;
+            }
+            LocalDate date = LocalDate.parse(rs.getString("date").substring(0, 10));
+            stats.add(Math.abs(Money.toDouble(fxRateService.toBase(rates, rs.getLong("amount"), currency, date))), ewmaAlpha);
+        }, userId, categoryId);
+        if (stats.sketch.count() > 0) {
+            stats.version++;
+        }
+        return stats;
+    }
+
+    private final class UserStats {
+        private final Long userId;
+        // Access-ordered so the least recently used category is evicted first
+        private final LinkedHashMap<Long, CategoryStats> categories = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CategoryStats> eldest) {
+                if (size() <= maxCategoriesPerUser) {
+                    return false;
+                }
+                if (eldest.getValue().dirty()) {
+                    evicted.put(List.of(userId, eldest.getKey()), eldest.getValue());
+                }
+                return true;
+            }
+        };
+
+        // Set once dropped from users; late records go to the stats that replaced it
+        private boolean retired;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        UserStats(Long userId) {
+            this.userId = userId;
+        }
+
+        synchronized boolean isUnusual(Long categoryId, double amount) {
+            lastUsed = System.currentTimeMillis();
+            CategoryStats stats = get(categoryId);
+            if (stats.sketch.count() < minSamples || amount <= stats.sketch.quantile(percentile)) {
+                return false;
+            }
+            return minZScore <= 0 || amount > stats.mean + minZScore * Math.sqrt(stats.variance);
+        }
+
+        void record(Long categoryId, double amount) {
+            synchronized (this) {
+                if (!retired) {
+                    CategoryStats stats = get(categoryId);
+                    stats.add(amount, ewmaAlpha);
+                    stats.version++;
+                    return;
+                }
+            }
+            users.remove(userId, this);
+            users.computeIfAbsent(userId, UserStats::new).record(categoryId, amount);
+        }
+
+        synchronized void collectDirty(List<Pending> pending) {
+            categories.forEach((categoryId, stats) -> {
+                if (stats.dirty()) {
+                    pending.add(new Pending(userId, categoryId, stats, stats.version, stats.serialize()));
+                }
+            });
+        }
+
+        synchronized boolean retireIfClean() {
+            for (CategoryStats stats : categories.values()) {
+                if (stats.dirty()) {
+                    return false;
+                }
+            }
+            retired = true;
+            return true;
+        }
+
+        private CategoryStats get(Long categoryId) {
+            CategoryStats stats = categories.get(categoryId);
+            if (stats == null) {
+                stats = load(userId, categoryId);
+                categories.put(categoryId, stats);
+            }
+            return stats;
+        }
+    }
+
+    private record Pending(Long userId, Long categoryId, CategoryStats stats, long version, byte[] data) {}
+
+    private static final class CategoryStats {
+        final QuantileSketch sketch;
+        double mean;
+        double variance;
+        // Bumped on every change; flushed is the version last written to the database
+        volatile long version;
+        volatile long flushed;
+
+        CategoryStats(QuantileSketch sketch) {
+            this.sketch = sketch;
+        }
+
+        boolean dirty() {
+            return version != flushed;
+        }
+
+        void add(double amount, double alpha) {
+            if (sketch.count() == 0) {
+                mean = amount;
+            } else {
+                double diff = amount - mean;
+                double increment = alpha * diff;
+                mean += increment;
+                variance = (1 - alpha) * (variance + diff * increment);
+            }
+            sketch.add(amount);
+        }
+
+        byte[] serialize() {
+            ByteBuffer buffer = ByteBuffer.allocate(16 + sketch.serializedSize());
+            buffer.putDouble(mean).putDouble(variance);
+            sketch.writeTo(buffer);
+            return buffer.array();
+        }
+
+        static CategoryStats deserialize(byte[] data, int maxBins) {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            double mean = buffer.getDouble();
+            double variance = buffer.getDouble();
+            CategoryStats stats = new CategoryStats(QuantileSketch.readFrom(buffer, maxBins));
+            stats.mean = mean;
+            stats.variance = variance;
+            return stats;
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.expensetracker.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Moves transactions older than the hot window into transactions_archive, one month
+ * per database transaction, and adds their totals to transaction_summaries so reports
+ * keep covering archived months without reading archived rows.
+ */
+@Service
+public class ArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveService.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private FxRateService fxRateService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${app.db.vendor}")
+    private String vendor;
+
+    @Value("${app.archive.enabled:false}")
+    private boolean enabled;
+
+    // Whole months kept in the hot table, counting the current one
+    @Value("${app.archive.hot-months:13}")
+    private int hotMonths;
+
+    @Scheduled(cron = "${app.archive.cron:0 30 3 1 * *}")
+    public void archiveScheduled() {
+        if (enabled) {
+            archive(defaultCutoff());
+        }
+    }
+
+    public LocalDate defaultCutoff() {
+        return YearMonth.now().minusMonths(hotMonths - 1).atDay(1);
+    }
+
+    // Archives every hot transaction dated before cutoff (rounded down to a month start)
+    public ArchiveResult archive(LocalDate cutoff) {
+        int months = 0;
+        int moved = 0;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            ArchiveResult result = shardRouter.onShard(shard, () -> archiveShard(cutoff));
+            months = Math.max(months, result.months());
+            moved += result.transactions();
+        }
+        return new ArchiveResult(months, moved);
+    }
+
+    private ArchiveResult archiveShard(LocalDate cutoff) {
+        YearMonth end = YearMonth.from(cutoff);
+        String oldest = jdbcTemplate.queryForObject(
+            "SELECT MIN(date) FROM transactions WHERE date < ?", String.class, dateParam(end.atDay(1)));
+        if (oldest == null) {
+            return new ArchiveResult(0, 0);
+        }
+
+        // Users with an account in a currency without any FX rate stay hot until rates arrive,
+        // since their summaries could not be converted to the base currency
+        Map<Long, String> currencies = new HashMap<>();
+        Set<Long> skipped = new TreeSet<>();
+        FxRateIndex rates = fxRateService.index();
+        jdbcTemplate.query("SELECT id, user_id, currency FROM accounts", rs -> {
+            currencies.put(rs.getLong("id"), rs.getString("currency"));
+            if (!rates.hasRate(rs.getString("currency"))) {
+                skipped.add(rs.getLong("user_id"));
+            }
+        });
+        if (!skipped.isEmpty()) {
+            log.warn("Not archiving users {}: accounts in currencies without FX rates", skipped);
+        }
+
+        int months = 0;
+        int moved = 0;
+        for (YearMonth month = YearMonth.parse(oldest.substring(0, 7)); month.isBefore(end); month = month.plusMonths(1)) {
+            YearMonth current = month;
+            Integer count = transactionTemplate.execute(status -> archiveMonth(current, currencies, rates, skipped));
+            if (count != null && count > 0) {
+                months++;
+                moved += count;
+            }
+        }
+        log.info("Archived {} transactions from {} months before {}", moved, months, end.atDay(1));
+        return new ArchiveResult(months, moved);
+    }
+
+    private int archiveMonth(YearMonth month, Map<Long, String> currencies, FxRateIndex rates, Set<Long> skipped) {
+        Object from = dateParam(month.atDay(1));
+        Object to = dateParam(month.plusMonths(1).atDay(1));
+        String users = skipped.isEmpty() ? "" : " AND user_id NOT IN (" + "?, ".repeat(skipped.size() - 1) + "?)";
+        List<Object> params = new ArrayList<>(List.of(from, to));
+        params.addAll(skipped);
+
+        // The rows are moved and summarized as one set. On PostgreSQL that takes a single
+        // statement, since separate statements under READ COMMITTED could each see rows
+        // committed in between; on SQLite the INSERT takes the write lock, so the DELETE
+        // that follows removes exactly the rows it copied.
+        // Transfer pairs share a date, so both legs always move together.
+        String columns = "id, user_id, account_id, category_id, type, date, amount, note, transfer_group, created_at, content_hash";
+        String where = "date >= ? AND date < ?" + users;
+        String returning = "RETURNING user_id, account_id, COALESCE(category_id, 0) AS category_id, type, date, amount";
+        String move;
+        if ("sqlite".equals(vendor)) {
+            jdbcTemplate.update("INSERT INTO transactions_archive(%s) SELECT %s FROM transactions WHERE %s"
+                .formatted(columns, columns, where), params.toArray());
+            move = "DELETE FROM transactions WHERE %s %s".formatted(where, returning);
+        } else {
+            move = """
+                WITH moved AS (DELETE FROM transactions WHERE %s RETURNING *)
+                INSERT INTO transactions_archive(%s)
+                SELECT %s FROM moved
+                %s
+                """.formatted(where, columns, columns, returning);
+        }
+
+        // Minor-unit sums per day group: total, row count
+        Map<List<Object>, long[]> days = new HashMap<>();
+        jdbcTemplate.query(move, rs -> {
+            List<Object> key = Arrays.asList(rs.getLong("user_id"), rs.getLong("account_id"), rs.getLong("category_id"),
+                rs.getString("type"), rs.getString("date").substring(0, 10));
+            long[] sums = days.computeIfAbsent(key, k -> new long[2]);
+            sums[0] += rs.getLong("amount");
+            sums[1]++;
+        }, params.toArray());
+
+        if (days.isEmpty()) {
+            return 0;
+        }
+
+        // Per-day groups are converted with their own day's rate, then summed per month
+        // Minor-unit sums: total, total in the base currency, row count
+        Map<List<Object>, long[]> summaries = new HashMap<>();
+        int moved = 0;
+        for (Map.Entry<List<Object>, long[]> day : days.entrySet()) {
+            List<Object> key = day.getKey();
+            long total = day.getValue()[0];
+            long[] sums = summaries.computeIfAbsent(key.subList(0, 4), k -> new long[3]);
+            sums[0] += total;
+            sums[1] += fxRateService.toBase(rates, total, currencies.get((Long) key.get(1)), LocalDate.parse((String) key.get(4)));
+            sums[2] += day.getValue()[1];
+            moved += (int) day.getValue()[1];
+        }
+
+        // Additive, so rows backdated into an already archived month are folded in on the next run
+        List<Object[]> rows = new ArrayList<>();
+        summaries.forEach((key, sums) -> rows.add(new Object[] {
+            key.get(0), key.get(1), key.get(2), key.get(3), from, sums[0], sums[1], sums[2]
+        }));
+        jdbcTemplate.batchUpdate("""
+            INSERT INTO transaction_summaries(user_id, account_id, category_id, type, period, total, total_base, tx_count)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (user_id, account_id, category_id, type, period) DO UPDATE SET
+                total = transaction_summaries.total + excluded.total,
+                total_base = transaction_summaries.total_base + excluded.total_base,
+                tx_count = transaction_summaries.tx_count + excluded.tx_count
+            """, rows);
+        return moved;
+    }
+
+    private Object dateParam(LocalDate date) {
+        return "sqlite".equals(vendor) ? date.toString() : date;
+    }
+
+    public record ArchiveResult(int months, int transactions) {}
+}
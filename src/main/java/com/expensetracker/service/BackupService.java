@@ -0,0 +1,322 @@
+package com.expensetracker.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.sqlite.SQLiteConnection;
+import org.sqlite.core.DB;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Online snapshots of the SQLite database (every shard). A WAL database is copied with
+ * VACUUM INTO, whose read transaction never blocks writers. Otherwise the backup API copies
+ * a few pages per step and pauses between steps; each step holds the read lock that keeps
+ * writers from committing, so that time is reported as the writer stall (not recorded for
+ * snapshots copied entirely with VACUUM INTO). Snapshots are
+ * directories of shard-N.db files, written under a temporary name and renamed when complete.
+ */
+@Service
+public class BackupService {
+
+    private static final Logger log = LoggerFactory.getLogger(BackupService.class);
+    private static final DateTimeFormatter NAME_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final String PREFIX = "snapshot-";
+    private static final String SCHEMA_VERSION =
+        "SELECT version FROM flyway_schema_history WHERE success = 1 AND version IS NOT NULL ORDER BY installed_rank DESC LIMIT 1";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${app.db.vendor}")
+    private String vendor;
+
+    @Value("${app.backup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.backup.dir:backups}")
+    private String dir;
+
+    // Snapshots kept; older ones are deleted after each successful backup
+    @Value("${app.backup.retain:7}")
+    private int retain;
+
+    @Value("${app.backup.pages-per-step:256}")
+    private int pagesPerStep;
+
+    // Pause between backup API steps, giving waiting writers the lock
+    @Value("${app.backup.step-pause-ms:10}")
+    private long stepPauseMs;
+
+    // Backups and restores never overlap
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private Timer duration;
+    private Timer writerStall;
+    private Counter failures;
+
+    @PostConstruct
+    void registerMetrics() {
+        duration = Timer.builder("backup.duration").description("Time to write a complete snapshot").register(meterRegistry);
+        writerStall = Timer.builder("backup.writer.stall")
+            .description("Time during a backup in which writers could not commit; recorded only for backups of "
+                + "databases not in WAL mode, since VACUUM INTO never blocks writers").register(meterRegistry);
+        failures = Counter.builder("backup.failures").register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${app.backup.cron:0 0 2 * * *}")
+    public void backupScheduled() {
+        if (enabled && "sqlite".equals(vendor)) {
+            try {
+                backup();
+            } catch (RuntimeException e) {
+                log.error("Scheduled backup failed", e);
+            }
+        }
+    }
+
+    public Snapshot backup() {
+        requireSqlite();
+        if (!lock.tryLock()) {
+            throw new RuntimeException("A backup or restore is already running");
+        }
+        long start = System.nanoTime();
+        Path tmp = null;
+        try {
+            String name = PREFIX + LocalDateTime.now().format(NAME_FORMAT);
+            Path target = Paths.get(dir).resolve(name);
+            if (Files.exists(target)) {
+                throw new RuntimeException("Snapshot " + name + " already exists");
+            }
+            tmp = Paths.get(dir).resolve(name + ".tmp");
+            Files.createDirectories(tmp);
+
+            long stallNanos = 0;
+            boolean stepped = false;
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                String file = tmp.resolve("shard-" + shard + ".db").toAbsolutePath().toString();
+                long stall = shardRouter.onShard(shard, () -> jdbcTemplate.execute(
+                    (ConnectionCallback<Long>) con -> copyOut(con, file)));
+                if (stall >= 0) {
+                    stallNanos += stall;
+                    stepped = true;
+                }
+            }
+            Files.move(tmp, target);
+            tmp = null;
+
+            long elapsed = System.nanoTime() - start;
+            duration.record(elapsed, TimeUnit.NANOSECONDS);
+            if (stepped) {
+                writerStall.record(stallNanos, TimeUnit.NANOSECONDS);
+                log.info("Backup {} written in {} ms (writers stalled {} ms)", name,
+                    elapsed / 1_000_000, stallNanos / 1_000_000);
+            } else {
+                log.info("Backup {} written in {} ms", name, elapsed / 1_000_000);
+            }
+            prune();
+            return snapshot(target);
+        } catch (IOException e) {
+            failures.increment();
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            failures.increment();
+            throw e;
+        } finally {
+            deleteQuietly(tmp);
+            lock.unlock();
+        }
+    }
+
+    public List<Snapshot> list() {
+        requireSqlite();
+        Path root = Paths.get(dir);
+        if (!Files.isDirectory(root)) {
+            return List.of();
+        }
+        try (Stream<Path> entries = Files.list(root)) {
+            List<Snapshot> snapshots = new ArrayList<>();
+            for (Path path : entries.filter(BackupService::isSnapshot).sorted(Comparator.reverseOrder()).toList()) {
+                snapshots.add(snapshot(path));
+            }
+            return snapshots;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Copies a snapshot back over the live database through the backup API, shard by shard.
+     * Requests touching a shard wait (busy timeout) while it is being restored. The snapshot
+     * must have the same schema version as the running application.
+     */
+    public Snapshot restore(String name) {
+        requireSqlite();
+        Path source = Paths.get(dir).resolve(name);
+        if (!name.startsWith(PREFIX) || name.contains("/") || name.contains("..") || !Files.isDirectory(source)) {
+            throw new RuntimeException("Snapshot not found: " + name);
+        }
+        if (!lock.tryLock()) {
+            throw new RuntimeException("A backup or restore is already running");
+        }
+        try {
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                if (!Files.exists(source.resolve("shard-" + shard + ".db"))) {
+                    throw new RuntimeException("Snapshot has no file for shard " + shard);
+                }
+            }
+            String liveVersion = jdbcTemplate.queryForObject(SCHEMA_VERSION, String.class);
+            String snapshotVersion = schemaVersion(source.resolve("shard-0.db"));
+            if (liveVersion == null || !liveVersion.equals(snapshotVersion)) {
+                throw new RuntimeException("Snapshot schema version " + snapshotVersion + " does not match " + liveVersion);
+            }
+
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                String file = source.resolve("shard-" + shard + ".db").toAbsolutePath().toString();
+                shardRouter.onShard(shard, () -> jdbcTemplate.execute((ConnectionCallback<Integer>) con ->
+                    database(con).restore("main", file, null, 100, 50, pagesPerStep)));
+            }
+            shardRouter.loadDirectory();
+            eventPublisher.publishEvent(new DatabaseRestoredEvent(name));
+            log.warn("Database restored from {}", name);
+            return snapshot(source);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Returns the time writers were locked out, or -1 for VACUUM INTO, which never locks them out
+    private long copyOut(Connection con, String file) throws SQLException {
+        String journalMode;
+        try (Statement st = con.createStatement(); ResultSet rs = st.executeQuery("PRAGMA journal_mode")) {
+            journalMode = rs.next() ? rs.getString(1) : "";
+        }
+        if ("wal".equalsIgnoreCase(journalMode)) {
+            try (var ps = con.prepareStatement("VACUUM INTO ?")) {
+                ps.setString(1, file);
+                ps.execute();
+            }
+            return -1;
+        }
+
+        // The progress callback runs between steps, after the step has released its lock
+        long[] stall = new long[1];
+        long[] stepStart = { System.nanoTime() };
+        int rc = database(con).backup("main", file, (remaining, pageCount) -> {
+            stall[0] += System.nanoTime() - stepStart[0];
+            if (remaining > 0 && stepPauseMs > 0) {
+                try {
+                    Thread.sleep(stepPauseMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            stepStart[0] = System.nanoTime();
+        }, 100, 50, pagesPerStep);
+        if (rc != 0) {
+            throw new SQLException("Backup failed with SQLite result code " + rc);
+        }
+        return stall[0];
+    }
+
+    private static DB database(Connection con) throws SQLException {
+        return con.unwrap(SQLiteConnection.class).getDatabase();
+    }
+
+    private static String schemaVersion(Path file) {
+        try (Connection con = DriverManager.getConnection("jdbc:sqlite:" + file.toAbsolutePath() + "?open_mode=1");
+             Statement st = con.createStatement();
+             ResultSet rs = st.executeQuery(SCHEMA_VERSION)) {
+            return rs.next() ? rs.getString(1) : null;
+        } catch (SQLException e) {
+            throw new RuntimeException("Snapshot is not readable: " + e.getMessage());
+        }
+    }
+
+    private void prune() {
+        List<Snapshot> snapshots = list();
+        for (Snapshot old : snapshots.subList(Math.min(retain, snapshots.size()), snapshots.size())) {
+            deleteQuietly(Paths.get(dir).resolve(old.name()));
+            log.info("Deleted old backup {}", old.name());
+        }
+    }
+
+    private static boolean isSnapshot(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(PREFIX) && !name.endsWith(".tmp") && Files.isDirectory(path);
+    }
+
+    private static Snapshot snapshot(Path path) {
+        try (Stream<Path> files = Files.list(path)) {
+            long bytes = 0;
+            int shards = 0;
+            for (Path file : files.toList()) {
+                bytes += Files.size(file);
+                shards++;
+            }
+            return new Snapshot(path.getFileName().toString(), shards, bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        if (path == null || !Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(path)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            log.warn("Could not delete {}", path, e);
+        }
+    }
+
+    private void requireSqlite() {
+        if (!"sqlite".equals(vendor)) {
+            throw new RuntimeException("Backups are only available for SQLite; use pg_dump for PostgreSQL");
+        }
+    }
+
+    public record Snapshot(String name, int shards, long bytes) {}
+
+    // Published after a restore so in-memory state derived from the database can be dropped
+    public record DatabaseRestoredEvent(String snapshot) {}
+}
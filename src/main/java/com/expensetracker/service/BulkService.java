@@ -0,0 +1,270 @@
+package com.expensetracker.service;
+
+import com.expensetracker.dto.BulkOperationDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Set-based bulk edits over hot and archived transactions. Each operation is a handful of
+ * UPDATE/DELETE statements in one transaction; transaction_summaries rows of archived months
+ * are adjusted by deltas computed inside those statements. A dry run executes the same
+ * statements and rolls back, so its counts are exact.
+ */
+@Service
+public class BulkService {
+
+    private static final List<String> SUMMARY_KEY = List.of("user_id", "account_id", "category_id", "type", "period");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ForecastService forecastService;
+
+    @Autowired
+    private AccountLocks accountLocks;
+
+    @Value("${app.db.vendor}")
+    private String vendor;
+
+    // Transfer legs and their fee keep their (category-less) shape
+    public BulkResult recategorize(BulkOperationDTO dto) {
+        if (dto.targetCategoryId() == null) {
+            throw new RuntimeException("targetCategoryId is required");
+        }
+        List<String> types = jdbcTemplate.queryForList(
+            "SELECT type FROM categories WHERE id = ? AND (user_id IS NULL OR user_id = ?)",
+            String.class, dto.targetCategoryId(), dto.userId());
+        if (types.isEmpty()) {
+            throw new RuntimeException("Category not found");
+        }
+        Filter filter = filter(dto)
+            .and("transfer_group IS NULL")
+            .and("CAST(type AS VARCHAR) = ?", "income".equals(types.get(0)) ? "INCOME" : "EXPENSE")
+            .and("(category_id IS NULL OR category_id <> ?)", dto.targetCategoryId());
+
+        return run(dto, () -> {
+            int archived = rekeyArchive("category_id", dto.targetCategoryId(), filter);
+            int hot = jdbcTemplate.update("UPDATE transactions SET category_id = ? WHERE " + filter.sql,
+                filter.params(dto.targetCategoryId()));
+            return new BulkResult(hot, archived, dto.dryRun());
+        });
+    }
+
+    // Moves non-transfer rows to another account of the same currency. Import hashes are
+    // cleared: they were built from the old account and only de-duplicate within it.
+    public BulkResult move(BulkOperationDTO dto) {
+        if (dto.targetAccountId() == null) {
+            throw new RuntimeException("targetAccountId is required");
+        }
+        List<String> currencies = jdbcTemplate.queryForList(
+            "SELECT currency FROM accounts WHERE id = ? AND user_id = ?", String.class, dto.targetAccountId(), dto.userId());
+        if (currencies.isEmpty()) {
+            throw new RuntimeException("Account not found");
+        }
+        Filter filter = filter(dto)
+            .and("transfer_group IS NULL")
+            .and("account_id <> ?", dto.targetAccountId())
+            .and("account_id IN (SELECT id FROM accounts WHERE currency = ?)", currencies.get(0));
+
+        return run(dto, () -> {
+            accountLocks.lockAllOf(dto.userId());
+            int archived = rekeyArchive("account_id", dto.targetAccountId(), filter);
+            int hot = jdbcTemplate.update("UPDATE transactions SET account_id = ?, content_hash = NULL WHERE " + filter.sql,
+                filter.params(dto.targetAccountId()));
+            return new BulkResult(hot, archived, dto.dryRun());
+        });
+    }
+
+    // Deleting any leg of a transfer deletes the whole group
+    public BulkResult delete(BulkOperationDTO dto) {
+        Filter base = filter(dto);
+        return run(dto, () -> {
+            accountLocks.lockAllOf(dto.userId());
+            Filter archiveFilter = withTransferGroups(base, "transactions_archive");
+            subtractFromSummaries(archiveFilter);
+            int archived = jdbcTemplate.update("DELETE FROM transactions_archive WHERE " + archiveFilter.sql, archiveFilter.params());
+            deleteEmptySummaries(dto.userId());
+            Filter hotFilter = withTransferGroups(base, "transactions");
+            int hot = jdbcTemplate.update("DELETE FROM transactions WHERE " + hotFilter.sql, hotFilter.params());
+            return new BulkResult(hot, archived, dto.dryRun());
+        });
+    }
+
+    private BulkResult run(BulkOperationDTO dto, Supplier<BulkResult> work) {
+        BulkResult result = transactionTemplate.execute(status -> {
+            BulkResult r = work.get();
+            if (dto.dryRun()) {
+                status.setRollbackOnly();
+            }
+            return r;
+        });
+        if (!dto.dryRun() && result.transactions() > 0) {
+            forecastService.invalidate(dto.userId());
+        }
+        return result;
+    }
+
+    /**
+     * Moves the archived rows matching filter to a new value of a summary key column: their
+     * monthly totals are added under the new key (base amounts at the old row's average
+     * rate), subtracted from the old key, and emptied summary rows are dropped.
+     */
+    private int rekeyArchive(String column, Long value, Filter filter) {
+        List<String> groupBy = new ArrayList<>();
+        StringBuilder select = new StringBuilder();
+        for (String key : SUMMARY_KEY) {
+            if (key.equals(column)) {
+                select.append("?, ");
+            } else {
+                select.append("d.").append(key).append(", ");
+                groupBy.add("d." + key);
+            }
+        }
+        jdbcTemplate.update("""
+            INSERT INTO transaction_summaries(user_id, account_id, category_id, type, period, total, total_base, tx_count)
+            SELECT %s SUM(d.total),
+                   SUM(CASE WHEN s.total = 0 THEN 0 ELSE CAST(ROUND(d.total * 1.0 * s.total_base / s.total) AS BIGINT) END),
+                   SUM(d.cnt)
+            FROM (%s) d
+            JOIN transaction_summaries s ON %s
+            WHERE true
+            GROUP BY %s
+            ON CONFLICT (user_id, account_id, category_id, type, period) DO UPDATE SET
+                total = transaction_summaries.total + excluded.total,
+                total_base = transaction_summaries.total_base + excluded.total_base,
+                tx_count = transaction_summaries.tx_count + excluded.tx_count
+            """.formatted(select, archivedDeltas(filter), joinOnKey("s", "d"), String.join(", ", groupBy)),
+            filter.params(value));
+        subtractFromSummaries(filter);
+        String set = "account_id".equals(column) ? "account_id = ?, content_hash = NULL" : column + " = ?";
+        int moved = jdbcTemplate.update("UPDATE transactions_archive SET " + set + " WHERE " + filter.sql,
+            filter.params(value));
+        deleteEmptySummaries(filter.userId);
+        return moved;
+    }
+
+    private void subtractFromSummaries(Filter filter) {
+        // SET expressions see the row before the update, so the old average rate applies.
+        // The 1.0 keeps the minor-unit columns from integer division.
+        jdbcTemplate.update("""
+            UPDATE transaction_summaries
+            SET total = transaction_summaries.total - d.total,
+                total_base = transaction_summaries.total_base
+                    - CASE WHEN transaction_summaries.total = 0 THEN 0
+                           ELSE CAST(ROUND(d.total * 1.0 * transaction_summaries.total_base / transaction_summaries.total) AS BIGINT) END,
+                tx_count = transaction_summaries.tx_count - d.cnt
+            FROM (%s) d
+            WHERE %s
+            """.formatted(archivedDeltas(filter), joinOnKey("transaction_summaries", "d")), filter.params());
+    }
+
+    private void deleteEmptySummaries(Long userId) {
+        jdbcTemplate.update("DELETE FROM transaction_summaries WHERE user_id = ? AND tx_count <= 0", userId);
+    }
+
+    // Archived rows matching the filter, totalled per summary key. The archive's type is the
+    // tx_type enum on PostgreSQL and the summaries' a VARCHAR, which do not compare directly.
+    private String archivedDeltas(Filter filter) {
+        String period = "sqlite".equals(vendor)
+            ? "date(date, 'start of month')"
+            : "CAST(date_trunc('month', date) AS DATE)";
+        return """
+            SELECT user_id, account_id, COALESCE(category_id, 0) AS category_id, CAST(type AS VARCHAR) AS type, %s AS period,
+                   SUM(amount) AS total, COUNT(*) AS cnt
+            FROM transactions_archive
+            WHERE %s
+            GROUP BY user_id, account_id, COALESCE(category_id, 0), type, %s
+            """.formatted(period, filter.sql, period);
+    }
+
+    private static String joinOnKey(String left, String right) {
+        List<String> conditions = new ArrayList<>();
+        for (String key : SUMMARY_KEY) {
+            conditions.add(left + "." + key + " = " + right + "." + key);
+        }
+        return String.join(" AND ", conditions);
+    }
+
+    private Filter withTransferGroups(Filter filter, String table) {
+        Filter expanded = new Filter(filter.userId);
+        expanded.sql.append("user_id = ? AND ((").append(filter.sql).append(") OR transfer_group IN (SELECT transfer_group FROM ")
+            .append(table).append(" WHERE ").append(filter.sql).append(" AND transfer_group IS NOT NULL))");
+        expanded.params.add(filter.userId);
+        expanded.params.addAll(filter.params);
+        expanded.params.addAll(filter.params);
+        return expanded;
+    }
+
+    private Filter filter(BulkOperationDTO dto) {
+        Filter filter = new Filter(dto.userId()).and("user_id = ?", dto.userId());
+        int conditions = 0;
+        if (dto.from() != null) {
+            filter.and("date >= ?", dateParam(LocalDate.parse(dto.from())));
+            conditions++;
+        }
+        if (dto.to() != null) {
+            filter.and("date <= ?", dateParam(LocalDate.parse(dto.to())));
+            conditions++;
+        }
+        if (dto.accountId() != null) {
+            filter.and("account_id = ?", dto.accountId());
+            conditions++;
+        }
+        if (dto.categoryId() != null) {
+            filter.and("category_id = ?", dto.categoryId());
+            conditions++;
+        }
+        if (dto.notePattern() != null && !dto.notePattern().isBlank()) {
+            filter.and("LOWER(note) LIKE LOWER(?)", dto.notePattern());
+            conditions++;
+        }
+        if (conditions == 0) {
+            throw new RuntimeException("At least one filter is required");
+        }
+        return filter;
+    }
+
+    private Object dateParam(LocalDate date) {
+        return "sqlite".equals(vendor) ? date.toString() : date;
+    }
+
+    private static final class Filter {
+        final Long userId;
+        final StringBuilder sql = new StringBuilder();
+        final List<Object> params = new ArrayList<>();
+
+        Filter(Long userId) {
+            this.userId = userId;
+        }
+
+        Filter and(String condition, Object... values) {
+            if (sql.length() > 0) {
+                sql.append(" AND ");
+            }
+            sql.append(condition);
+            params.addAll(List.of(values));
+            return this;
+        }
+
+        // Filter parameters, preceded by any parameters of the statement itself
+        Object[] params(Object... leading) {
+            List<Object> all = new ArrayList<>(List.of(leading));
+            all.addAll(params);
+            return all.toArray();
+        }
+    }
+
+    public record BulkResult(int transactions, int archivedTransactions, boolean dryRun) {}
+}
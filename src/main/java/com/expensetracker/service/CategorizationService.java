@@ -0,0 +1,200 @@
+package com.expensetracker.service;
+
+import com.expensetracker.dto.RuleCreateDTO;
+import com.expensetracker.entity.Money;
+import com.expensetracker.entity.TxType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Per-user auto-categorization rules. Each user's rules are compiled into a RuleMatcher on
+ * first use and kept until the rules change, so categorizing a transaction costs one scan
+ * of its note plus the checks of the few rules whose keyword or literal occurs in it.
+ */
+@Service
+public class CategorizationService {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.rules.max-per-user:1000}")
+    private int maxPerUser;
+
+    @Value("${app.rules.apply-batch-size:500}")
+    private int applyBatchSize;
+
+    private final Map<Long, RuleMatcher> matchers = new ConcurrentHashMap<>();
+
+    public List<Map<String, Object>> listRules(Long userId) {
+        List<Map<String, Object>> rules = jdbcTemplate.queryForList("""
+            SELECT id, category_id, keyword, pattern, min_amount, max_amount, account_id, priority
+            FROM category_rules
+            WHERE user_id = ?
+            ORDER BY priority, id
+            """, userId);
+        // Bounds are stored in minor units
+        for (Map<String, Object> rule : rules) {
+            rule.computeIfPresent("min_amount", (column, minor) -> Money.fromMinor(((Number) minor).longValue()));
+            rule.computeIfPresent("max_amount", (column, minor) -> Money.fromMinor(((Number) minor).longValue()));
+        }
+        return rules;
+    }
+
+    public long createRule(RuleCreateDTO dto) {
+        String keyword = blankToNull(dto.keyword());
+        String pattern = blankToNull(dto.pattern());
+        if (keyword == null && pattern == null && dto.minAmount() == null && dto.maxAmount() == null && dto.accountId() == null) {
+            throw new RuntimeException("A rule needs at least one condition");
+        }
+        if (pattern != null) {
+            compile(pattern);
+        }
+        if (dto.minAmount() != null && dto.maxAmount() != null && dto.minAmount().compareTo(dto.maxAmount()) > 0) {
+            throw new RuntimeException("minAmount is greater than maxAmount");
+        }
+        Integer categories = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM categories WHERE id = ? AND (user_id IS NULL OR user_id = ?)",
+            Integer.class, dto.categoryId(), dto.userId());
+        if (categories == null || categories == 0) {
+            throw new RuntimeException("Category not found");
+        }
+        if (dto.accountId() != null) {
+            Integer accounts = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM accounts WHERE id = ? AND user_id = ?", Integer.class, dto.accountId(), dto.userId());
+            if (accounts == null || accounts == 0) {
+                throw new RuntimeException("Account not found");
+            }
+        }
+        Integer existing = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM category_rules WHERE user_id = ?", Integer.class, dto.userId());
+        if (existing != null && existing >= maxPerUser) {
+            throw new RuntimeException("Too many rules (limit " + maxPerUser + ")");
+        }
+
+        // RETURNING works on both vendors, unlike generated keys on the SQLite driver
+        Long id = jdbcTemplate.queryForObject("""
+            INSERT INTO category_rules(user_id, category_id, keyword, pattern, min_amount, max_amount, account_id, priority)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+            RETURNING id
+            """, Long.class, dto.userId(), dto.categoryId(), keyword, pattern, minor(dto.minAmount()), minor(dto.maxAmount()),
+            dto.accountId(), dto.priority() != null ? dto.priority() : 0);
+        matchers.remove(dto.userId());
+        return id;
+    }
+
+    public boolean deleteRule(Long id, Long userId) {
+        int deleted = jdbcTemplate.update("DELETE FROM category_rules WHERE id = ? AND user_id = ?", id, userId);
+        matchers.remove(userId);
+        return deleted > 0;
+    }
+
+    // Category id of the first matching rule, or null when none matches
+    public Long categorize(Long userId, Long accountId, TxType type, BigDecimal amount, String note) {
+        RuleMatcher matcher = matcher(userId);
+        return matcher.size() == 0 ? null : matcher.match(accountId, type, amount, note);
+    }
+
+    // Runs the rules over the user's uncategorized expenses and incomes; transfer legs and fees are left alone
+    public ApplyResult applyToUncategorized(Long userId) {
+        RuleMatcher matcher = matcher(userId);
+        if (matcher.size() == 0) {
+            return new ApplyResult(0, 0);
+        }
+        List<Object[]> updates = new ArrayList<>();
+        int[] scanned = new int[1];
+        jdbcTemplate.query("""
+            SELECT id, account_id, type, amount, note
+            FROM transactions
+            WHERE user_id = ? AND category_id IS NULL AND transfer_group IS NULL AND type IN ('EXPENSE', 'INCOME')
+            """, rs -> {
+            scanned[0]++;
+            Long categoryId = matcher.match(rs.getLong("account_id"), TxType.valueOf(rs.getString("type")),
+                Money.fromMinor(rs.getLong("amount")), rs.getString("note"));
+            if (categoryId != null) {
+                updates.add(new Object[] { categoryId, rs.getLong("id") });
+            }
+        }, userId);
+
+        // The category_id IS NULL guard keeps edits made since the scan
+        String sql = "UPDATE transactions SET category_id = ? WHERE id = ? AND category_id IS NULL";
+        int updated = 0;
+        for (int from = 0; from < updates.size(); from += applyBatchSize) {
+            for (int count : jdbcTemplate.batchUpdate(sql, updates.subList(from, Math.min(from + applyBatchSize, updates.size())))) {
+                updated += Math.max(count, 0);
+            }
+        }
+        return new ApplyResult(scanned[0], updated);
+    }
+
+    @EventListener
+    public void onRestore(BackupService.DatabaseRestoredEvent event) {
+        matchers.clear();
+    }
+
+    private RuleMatcher matcher(Long userId) {
+        // Loading inside computeIfAbsent means a concurrent remove() waits for it, so a stale list is never cached
+        return matchers.computeIfAbsent(userId, this::load);
+    }
+
+    private RuleMatcher load(Long userId) {
+        List<RuleMatcher.Rule> rules = jdbcTemplate.query("""
+            SELECT r.id, r.category_id, c.type AS category_type, r.keyword, r.pattern,
+                   r.min_amount, r.max_amount, r.account_id
+            FROM category_rules r
+            JOIN categories c ON c.id = r.category_id
+            WHERE r.user_id = ?
+            ORDER BY r.priority, r.id
+            """, (rs, i) -> {
+            long accountId = rs.getLong("account_id");
+            Long account = rs.wasNull() ? null : accountId;
+            String pattern = rs.getString("pattern");
+            return new RuleMatcher.Rule(
+                rs.getLong("id"),
+                rs.getLong("category_id"),
+                "income".equals(rs.getString("category_type")),
+                rs.getString("keyword"),
+                pattern != null ? compile(pattern) : null,
+                pattern != null ? KeywordAutomaton.requiredLiteral(pattern) : null,
+                money(rs, "min_amount"),
+                money(rs, "max_amount"),
+                account);
+        }, userId);
+        return new RuleMatcher(rules);
+    }
+
+    private static Pattern compile(String pattern) {
+        try {
+            return Pattern.compile(pattern, Pattern.CASE_INSENSITIVE);
+        } catch (PatternSyntaxException e) {
+            throw new RuntimeException("Invalid pattern: " + e.getDescription());
+        }
+    }
+
+    private static Long minor(BigDecimal amount) {
+        return amount != null ? Money.toMinor(amount) : null;
+    }
+
+    private static BigDecimal money(ResultSet rs, String column) throws SQLException {
+        long minor = rs.getLong(column);
+        return rs.wasNull() ? null : Money.fromMinor(minor);
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    public record ApplyResult(int scanned, int categorized) {}
+}
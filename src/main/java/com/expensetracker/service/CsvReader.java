@@ -0,0 +1,124 @@
+package com.expensetracker.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming RFC 4180 reader over a byte channel. Bytes are read and decoded in fixed-size
+ * chunks, so memory use does not depend on the file size; quoted fields may contain
+ * delimiters, doubled quotes and line breaks, also across chunk boundaries.
+ */
+final class CsvReader {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final ReadableByteChannel channel;
+    private final char delimiter;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer bytes = ByteBuffer.allocate(CHUNK_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(CHUNK_SIZE);
+    private final StringBuilder field = new StringBuilder();
+    private boolean eof;
+    private boolean started;
+    private long line = 1;
+    private long recordLine;
+
+    CsvReader(ReadableByteChannel channel, char delimiter) {
+        this.channel = channel;
+        this.delimiter = delimiter;
+        chars.flip();
+    }
+
+    // Line number the last returned record started on
+    long recordLine() {
+        return recordLine;
+    }
+
+    // Fields of the next record, or null at the end; blank lines are skipped
+    List<String> next() throws IOException {
+        List<String> fields = new ArrayList<>();
+        boolean quoted = false;
+        boolean any = false;
+        field.setLength(0);
+        recordLine = line;
+        while (true) {
+            if (!chars.hasRemaining() && !fill()) {
+                if (!any && field.length() == 0) {
+                    return null;
+                }
+                fields.add(field.toString());
+                return fields;
+            }
+            char c = chars.get();
+            if (quoted) {
+                if (c == '"') {
+                    if (!chars.hasRemaining()) {
+                        fill();
+                    }
+                    if (chars.hasRemaining() && chars.get(chars.position()) == '"') {
+                        chars.get();
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    field.append(c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+                any = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+                any = true;
+            } else if (c == '\n') {
+                line++;
+                if (!any && field.length() == 0) {
+                    recordLine = line;
+                    continue;
+                }
+                fields.add(field.toString());
+                return fields;
+            } else if (c != '\r') {
+                field.append(c);
+                any = true;
+            }
+        }
+    }
+
+    private boolean fill() throws IOException {
+        chars.compact();
+        while (chars.position() == 0 && !eof) {
+            if (channel.read(bytes) < 0) {
+                eof = true;
+            }
+            bytes.flip();
+            decoder.decode(bytes, chars, eof);
+            if (eof) {
+                decoder.flush(chars);
+            }
+            bytes.compact();
+        }
+        chars.flip();
+        if (!started && chars.hasRemaining()) {
+            started = true;
+            // Byte order mark some spreadsheet exports write
+            if (chars.get(chars.position()) == '\uFEFF') {
+                chars.get();
+            }
+        }
+        return chars.hasRemaining();
+    }
+}
@@ -0,0 +1,123 @@
+package com.expensetracker.service;
+
+import com.expensetracker.entity.Money;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.LocalDate;
+
+@Service
+public class ExportService {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${app.db.vendor}")
+    private String vendor;
+
+    private static final String[] COLUMNS = { "id", "date", "type", "account_id", "category_id", "amount", "note", "transfer_group" };
+
+    private static final CBORFactory CBOR = CBORFactory.builder().disable(StreamWriteFeature.AUTO_CLOSE_TARGET).build();
+
+    // Streams hot and (optionally) archived transactions as CSV, oldest first
+    public void writeTransactionsCsv(Long userId, LocalDate from, LocalDate to, boolean includeArchive, Writer out) {
+        try {
+            out.write(String.join(",", COLUMNS) + "\n");
+            queryTransactions(userId, from, to, includeArchive, rs -> {
+                try {
+                    out.write(rs.getLong("id") + "," + rs.getString("date").substring(0, 10) + "," + rs.getString("type") + ","
+                        + rs.getLong("account_id") + "," + nullable(rs.getString("category_id")) + ","
+                        + Money.fromMinor(rs.getLong("amount")).toPlainString() + "," + csv(rs.getString("note")) + ","
+                        + nullable(rs.getString("transfer_group")) + "\n");
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Same rows as CBOR: a header array, then one array per transaction with the amount in
+    // integer hundredths and the date as epoch day
+    public void writeTransactionsCbor(Long userId, LocalDate from, LocalDate to, boolean includeArchive, OutputStream out) {
+        try (JsonGenerator gen = CBOR.createGenerator(out)) {
+            gen.writeStartArray();
+            gen.writeArray(COLUMNS, 0, COLUMNS.length);
+            queryTransactions(userId, from, to, includeArchive, rs -> {
+                try {
+                    gen.writeStartArray();
+                    gen.writeNumber(rs.getLong("id"));
+                    gen.writeNumber(LocalDate.parse(rs.getString("date").substring(0, 10)).toEpochDay());
+                    gen.writeString(rs.getString("type"));
+                    gen.writeNumber(rs.getLong("account_id"));
+                    long categoryId = rs.getLong("category_id");
+                    if (rs.wasNull()) {
+                        gen.writeNull();
+                    } else {
+                        gen.writeNumber(categoryId);
+                    }
+                    // Stored in minor units already
+                    gen.writeNumber(rs.getLong("amount"));
+                    gen.writeString(rs.getString("note"));
+                    gen.writeString(rs.getString("transfer_group"));
+                    gen.writeEndArray();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            gen.writeEndArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void queryTransactions(Long userId, LocalDate from, LocalDate to, boolean includeArchive, RowCallbackHandler handler) {
+        String columns = "id, date, type, account_id, category_id, amount, note, transfer_group";
+        String sql = "SELECT " + columns + " FROM transactions WHERE user_id = ? AND date BETWEEN ? AND ?";
+        Object[] args = { userId, dateParam(from), dateParam(to) };
+        if (includeArchive) {
+            sql = sql + " UNION ALL SELECT " + columns + " FROM transactions_archive WHERE user_id = ? AND date BETWEEN ? AND ?";
+            args = new Object[] { userId, dateParam(from), dateParam(to), userId, dateParam(from), dateParam(to) };
+        }
+        // Streaming runs outside the request thread, so route explicitly
+        String query = sql + " ORDER BY date, id";
+        Object[] params = args;
+        shardRouter.forUser(userId, () -> {
+            jdbcTemplate.query(query, handler, params);
+            return null;
+        });
+    }
+
+    private static String nullable(String value) {
+        return value != null ? value : "";
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    private Object dateParam(LocalDate date) {
+        return "sqlite".equals(vendor) ? date.toString() : date;
+    }
+}
@@ -0,0 +1,72 @@
+package com.expensetracker.service;
+
+import com.expensetracker.config.VirtualThreadsConfig;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Runs independent queries of one request side by side on virtual threads, routed to the
+ * user's shard. Without virtual threads forks run inline on the caller, as before, and so do
+ * forks inside a transaction: they read its snapshot, and a fork waiting for a second
+ * connection (permit) while the caller holds one could wait out the permit timeout.
+ */
+@Component
+class FanOut {
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private Environment environment;
+
+    // Null when forks run inline
+    private ExecutorService executor;
+
+    @PostConstruct
+    void start() {
+        if (VirtualThreadsConfig.isActive(environment)) {
+            try {
+                // Compiled for Java 17, so the Java 21 factory is looked up at runtime
+                executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Virtual threads are not available", e);
+            }
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    <T> CompletableFuture<T> fork(Long userId, Supplier<T> task) {
+        if (executor == null || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return CompletableFuture.completedFuture(task.get());
+        }
+        return CompletableFuture.supplyAsync(() -> shardRouter.forUser(userId, task), executor);
+    }
+
+    // The fork's result, rethrowing its exception as the caller would have seen it inline
+    static <T> T join(CompletableFuture<T> fork) {
+        try {
+            return fork.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.expensetracker.service;
+
+import com.expensetracker.entity.Money;
+import com.expensetracker.entity.TxType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-user forecasting state for the advisor. Daily expense outflow is smoothed with
+ * Holt-Winters (level + weekly additive seasonality); income is modelled as a smoothed
+ * monthly amount arriving on the user's usual payday. Month-to-date income and spending
+ * are kept alongside. Writes update the state incrementally; reads only roll it to today.
+ */
+@Service
+public class ForecastService {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FxRateService fxRateService;
+
+    @Value("${app.db.vendor}")
+    private String vendor;
+
+    @Value("${app.forecast.alpha:0.1}")
+    private double alpha;
+
+    @Value("${app.forecast.gamma:0.2}")
+    private double gamma;
+
+    @Value("${app.forecast.income-alpha:0.5}")
+    private double incomeAlpha;
+
+    @Value("${app.forecast.history-days:120}")
+    private int historyDays;
+
+    private final Map<Long, State> states = new ConcurrentHashMap<>();
+
+    public Forecast forecast(Long userId) {
+        State state = states.computeIfAbsent(userId, id -> new State());
+        LocalDate today = LocalDate.now();
+        synchronized (state) {
+            if (state.stale || !YearMonth.from(today).equals(state.month)) {
+                state.generation.incrementAndGet();
+                try {
+                    rebuild(userId, state, today);
+                } finally {
+                    state.generation.incrementAndGet();
+                }
+            }
+            state.rollTo(today.toEpochDay(), alpha, gamma);
+            return new Forecast(state.month, state.monthIncome, state.monthSpent,
+                state.outLevel, state.outSeason.clone(), state.incomeLevel, state.payday);
+        }
+    }
+
+    // Applies a committed write; amount is signed as stored (expenses negative). Never fails
+    // the write: anything that cannot be applied marks the state for a rebuild instead.
+    public void record(Long userId, TxType type, LocalDate date, BigDecimal amount, String currency) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            apply(userId, generation(userId), type, date, amount, currency);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            // Taken while the row is not yet visible to a rebuild
+            long generation;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                generation = generation(userId);
+            }
+
+            @Override
+            public void afterCommit() {
+                apply(userId, generation, type, date, amount, currency);
+            }
+        });
+    }
+
+    private void apply(Long userId, long generation, TxType type, LocalDate date, BigDecimal amount, String currency) {
+        State state = states.get(userId);
+        if (state == null) {
+            return;
+        }
+        FxRateIndex rates = fxRateService.index();
+        synchronized (state) {
+            // A rebuild running at or since the commit may already have counted the row
+            if (generation % 2 != 0 || state.generation.get() != generation || !rates.hasRate(currency)) {
+                state.stale = true;
+                return;
+            }
+            double value = fxRateService.toBase(rates, amount, currency, date).doubleValue();
+            state.apply(type, date, value, LocalDate.now(), alpha, gamma);
+        }
+    }
+
+    private long generation(Long userId) {
+        State state = states.get(userId);
+        // Read without the monitor, which a rebuild holds while it queries
+        return state == null ? -1 : state.generation.get();
+    }
+
+    // For changes that cannot be applied incrementally (deletes); rebuilt on next read
+    public void invalidate(Long userId) {
+        afterCommit(() -> {
+            State state = states.get(userId);
+            if (state != null) {
+                synchronized (state) {
+                    state.stale = true;
+                }
+            }
+        });
+    }
+
+    @EventListener
+    public void onRestore(BackupService.DatabaseRestoredEvent event) {
+        states.clear();
+    }
+
+    private static void afterCommit(Runnable update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+
+    private void rebuild(Long userId, State state, LocalDate today) {
+        YearMonth month = YearMonth.from(today);
+        LocalDate from = today.minusDays(historyDays);
+        LocalDate to = month.atEndOfMonth();
+        state.reset(from.toEpochDay(), YearMonth.from(from));
+
+        Map<Long, String> currencies = fxRateService.accountCurrencies(userId);
+        FxRateIndex rates = fxRateService.index();
+        String sql = """
+            SELECT date, account_id, type, SUM(amount) AS total
+            FROM transactions
+            WHERE user_id = ? AND date BETWEEN ? AND ?
+            GROUP BY date, account_id, type
+            ORDER BY date
+            """;
+        jdbcTemplate.query(sql, rs -> {
+            LocalDate date = LocalDate.parse(rs.getString("date").substring(0, 10));
+            String currency = currencies.get(rs.getLong("account_id"));
+            // Accounts in a currency without FX rates are left out, as in reports
+            if (!rates.hasRate(currency)) {
+                return;
+            }
+            double value = Money.toDouble(fxRateService.toBase(rates, rs.getLong("total"), currency, date));
+            // Months inside the history window feed the income level as they complete
+            while (state.month.isBefore(YearMonth.from(date)) && state.month.isBefore(month)) {
+                state.closeMonth(incomeAlpha);
+            }
+            state.apply(TxType.valueOf(rs.getString("type")), date, value, today, alpha, gamma);
+        }, userId, dateParam(from), dateParam(to));
+        while (state.month.isBefore(month)) {
+            state.closeMonth(incomeAlpha);
+        }
+    }
+
+    // Daily expense outflow and income in the base currency, one slot per day from 'from' to 'to'
+    public DailyHistory history(Long userId, LocalDate from, LocalDate to) {
+        int days = (int) ChronoUnit.DAYS.between(from, to) + 1;
+        double[] outflow = new double[Math.max(days, 0)];
+        double[] income = new double[Math.max(days, 0)];
+
+        Map<Long, String> currencies = fxRateService.accountCurrencies(userId);
+        FxRateIndex rates = fxRateService.index();
+        String sql = """
+            SELECT date, account_id, type, SUM(amount) AS total
+            FROM transactions
+            WHERE user_id = ? AND date BETWEEN ? AND ? AND type IN ('EXPENSE', 'INCOME')
+            GROUP BY date, account_id, type
+            """;
+        jdbcTemplate.query(sql, rs -> {
+            LocalDate date = LocalDate.parse(rs.getString("date").substring(0, 10));
+            String currency = currencies.get(rs.getLong("account_id"));
+            if (!rates.hasRate(currency)) {
+                return;
+            }
+            double value = Money.toDouble(fxRateService.toBase(rates, rs.getLong("total"), currency, date));
+            int index = (int) (date.toEpochDay() - from.toEpochDay());
+            if (TxType.EXPENSE.name().equals(rs.getString("type"))) {
+                outflow[index] -= value;
+            } else {
+                income[index] += value;
+            }
+        }, userId, dateParam(from), dateParam(to));
+
+        return new DailyHistory(from, outflow, income);
+    }
+
+    private Object dateParam(LocalDate date) {
+        return "sqlite".equals(vendor) ? date.toString() : date;
+    }
+
+    // Monday = 0
+    private static int dayOfWeek(long epochDay) {
+        return Math.floorMod(epochDay + 3, 7);
+    }
+
+    private static final class State {
+        double outLevel;
+        final double[] outSeason = new double[7];
+        // Day still accumulating outflow; days before it are folded into the state
+        long openDay;
+        double openOut;
+        double incomeLevel;
+        int payday;
+        YearMonth month;
+        double monthIncome;
+        double monthSpent;
+        double largestIncome;
+        boolean partialMonth;
+        boolean stale = true;
+        // Bumped when a rebuild starts and again when it ends, so it is odd while one runs
+        final AtomicLong generation = new AtomicLong();
+
+        void reset(long startDay, YearMonth startMonth) {
+            outLevel = 0;
+            Arrays.fill(outSeason, 0);
+            openDay = startDay;
+            openOut = 0;
+            incomeLevel = 0;
+            payday = 0;
+            month = startMonth;
+            monthIncome = monthSpent = largestIncome = 0;
+            // The history window usually starts mid-month, so its first month is incomplete
+            partialMonth = true;
+            stale = false;
+        }
+
+        void closeMonth(double incomeAlpha) {
+            if (!partialMonth) {
+                incomeLevel = incomeLevel == 0 ? monthIncome : incomeAlpha * monthIncome + (1 - incomeAlpha) * incomeLevel;
+            }
+            partialMonth = false;
+            month = month.plusMonths(1);
+            monthIncome = monthSpent = largestIncome = 0;
+        }
+
+        void apply(TxType type, LocalDate date, double value, LocalDate today, double alpha, double gamma) {
+            if (stale) {
+                return;
+            }
+            if (YearMonth.from(date).equals(month)) {
+                if (type == TxType.INCOME) {
+                    monthIncome += value;
+                    if (value > largestIncome) {
+                        largestIncome = value;
+                        payday = date.getDayOfMonth();
+                    }
+                } else if (type == TxType.EXPENSE) {
+                    monthSpent -= value;
+                }
+            }
+            long day = date.toEpochDay();
+            if (type != TxType.EXPENSE || day > today.toEpochDay()) {
+                // Future-dated expenses count for the month now and are smoothed by the next rebuild
+                return;
+            }
+            if (day < openDay) {
+                // Backdated past the folded window; cheaper to rebuild than to rewind
+                stale = true;
+                return;
+            }
+            rollTo(day, alpha, gamma);
+            openOut -= value;
+        }
+
+        void rollTo(long day, double alpha, double gamma) {
+            while (openDay < day) {
+                int dow = dayOfWeek(openDay);
+                double previous = outLevel;
+                outLevel = alpha * (openOut - outSeason[dow]) + (1 - alpha) * outLevel;
+                outSeason[dow] = gamma * (openOut - previous) + (1 - gamma) * outSeason[dow];
+                openDay++;
+                openOut = 0;
+            }
+        }
+    }
+
+    public record DailyHistory(LocalDate from, double[] outflow, double[] income) {}
+
+    public record Forecast(YearMonth month, double monthIncome, double monthSpent,
+                           double outLevel, double[] outSeason,
+                           double incomeLevel, int payday) {
+
+        public double outflow(LocalDate date) {
+            return Math.max(0, outLevel + outSeason[dayOfWeek(date.toEpochDay())]);
+        }
+
+        // Expected income on date: the monthly level on payday, less what already arrived this month
+        public double income(LocalDate date) {
+            if (payday == 0 || date.getDayOfMonth() != Math.min(payday, date.lengthOfMonth())) {
+                return 0;
+            }
+            return YearMonth.from(date).equals(month) ? Math.max(0, incomeLevel - monthIncome) : incomeLevel;
+        }
+
+        public double netFlow(LocalDate date) {
+            return income(date) - outflow(date);
+        }
+
+        // Average expected outflow over the coming week
+        public double dailyBurn(LocalDate from) {
+            double total = 0;
+            for (int i = 0; i < 7; i++) {
+                total += outflow(from.plusDays(i));
+            }
+            return total / 7;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.expensetracker.service;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of FX rates keyed by (currency, date).
+ * Each currency keeps its rates in parallel sorted arrays so a lookup is a
+ * hash probe plus a binary search for the latest rate on or before the date.
+ */
+public final class FxRateIndex {
+
+    private final String baseCurrency;
+    private final Map<String, Series> series;
+
+    private FxRateIndex(String baseCurrency, Map<String, Series> series) {
+        this.baseCurrency = baseCurrency;
+        this.series = Map.copyOf(series);
+    }
+
+    public static FxRateIndex empty(String baseCurrency) {
+        return new FxRateIndex(baseCurrency, Map.of());
+    }
+
+    public static Builder builder(String baseCurrency) {
+        return new Builder(baseCurrency);
+    }
+
+    public String getBaseCurrency() { return baseCurrency; }
+
+    public boolean isEmpty() { return series.isEmpty(); }
+
+    // False for a currency without any rate, whose amounts cannot be converted at all
+    public boolean hasRate(String currency) {
+        return currency == null || baseCurrency.equals(currency) || series.containsKey(currency);
+    }
+
+    // Units of the base currency for 1 unit of currency on date
+    public double rateToBase(String currency, LocalDate date) {
+        if (currency == null || baseCurrency.equals(currency)) {
+            return 1.0;
+        }
+        Series s = series.get(currency);
+        if (s == null) {
+            throw new RuntimeException("No FX rate for " + currency);
+        }
+        return s.rateAt(date.toEpochDay());
+    }
+
+    public double rate(String from, String to, LocalDate date) {
+        if (from.equals(to)) {
+            return 1.0;
+        }
+        return rateToBase(from, date) / rateToBase(to, date);
+    }
+
+    private static final class Series {
+        private final int[] days;
+        private final double[] rates;
+
+        Series(int[] days, double[] rates) {
+            this.days = days;
+            this.rates = rates;
+        }
+
+        double rateAt(long epochDay) {
+            int i = Arrays.binarySearch(days, (int) epochDay);
+            if (i < 0) {
+                // Latest rate before the date; fall back to the earliest known rate
+                i = Math.max(-i - 2, 0);
+            }
+            return rates[i];
+        }
+    }
+
+    public static final class Builder {
+        private final String baseCurrency;
+        private final Map<String, List<long[]>> rows = new HashMap<>();
+
+        private Builder(String baseCurrency) {
+            this.baseCurrency = baseCurrency;
+        }
+
+        public Builder add(String currency, LocalDate date, double rate) {
+            rows.computeIfAbsent(currency, k -> new ArrayList<>())
+                .add(new long[] { date.toEpochDay(), Double.doubleToRawLongBits(rate) });
+            return this;
+        }
+
+        public FxRateIndex build() {
+            Map<String, Series> series = new HashMap<>();
+            rows.forEach((currency, list) -> {
+                list.sort((a, b) -> Long.compare(a[0], b[0]));
+                int[] days = new int[list.size()];
+                double[] rates = new double[list.size()];
+                for (int i = 0; i < list.size(); i++) {
+                    days[i] = (int) list.get(i)[0];
+                    rates[i] = Double.longBitsToDouble(list.get(i)[1]);
+                }
+                series.put(currency, new Series(days, rates));
+            });
+            return new FxRateIndex(baseCurrency, series);
+        }
+    }
+}
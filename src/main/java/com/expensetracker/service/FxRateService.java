@@ -0,0 +1,163 @@
+package com.expensetracker.service;
+
+import com.expensetracker.entity.Money;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Service
+public class FxRateService {
+
+    private static final Logger log = LoggerFactory.getLogger(FxRateService.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${app.db.vendor}")
+    private String vendor;
+
+    @Value("${app.fx.base-currency:IDR}")
+    private String baseCurrency;
+
+    // Local CSV file or http(s) URL with lines "date,currency,rate"
+    @Value("${app.fx.source:}")
+    private String source;
+
+    // Readers always see a complete snapshot; refresh swaps the reference
+    private volatile FxRateIndex index;
+
+    public FxRateIndex index() {
+        FxRateIndex current = index;
+        return current != null ? current : FxRateIndex.empty(baseCurrency);
+    }
+
+    public String getBaseCurrency() { return baseCurrency; }
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${app.fx.refresh-interval-ms:3600000}")
+    public void refresh() {
+        if (!source.isBlank()) {
+            try {
+                importRates(readSource());
+            } catch (IOException e) {
+                log.warn("Could not load FX rates from {}: {}", source, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        index = loadIndex();
+    }
+
+    public BigDecimal toBase(BigDecimal amount, String currency, LocalDate date) {
+        return toBase(index(), amount, currency, date);
+    }
+
+    public BigDecimal toBase(FxRateIndex snapshot, BigDecimal amount, String currency, LocalDate date) {
+        if (currency == null || snapshot.getBaseCurrency().equals(currency)) {
+            return amount;
+        }
+        return amount.multiply(BigDecimal.valueOf(snapshot.rateToBase(currency, date)))
+            .setScale(2, RoundingMode.HALF_UP);
+    }
+
+    // Minor units in and out, so aggregations can stay on primitive longs
+    public long toBase(FxRateIndex snapshot, long minor, String currency, LocalDate date) {
+        if (currency == null || snapshot.getBaseCurrency().equals(currency)) {
+            return minor;
+        }
+        return Money.convert(minor, snapshot.rateToBase(currency, date));
+    }
+
+    public Map<Long, String> accountCurrencies(Long userId) {
+        Map<Long, String> currencies = new HashMap<>();
+        jdbcTemplate.query("SELECT id, currency FROM accounts WHERE user_id = ?",
+            rs -> { currencies.put(rs.getLong("id"), rs.getString("currency")); }, userId);
+        return currencies;
+    }
+
+    private FxRateIndex loadIndex() {
+        FxRateIndex.Builder builder = FxRateIndex.builder(baseCurrency);
+        jdbcTemplate.query("SELECT date, currency, rate FROM fx_rates",
+            rs -> {
+                builder.add(rs.getString("currency"),
+                    LocalDate.parse(rs.getString("date").substring(0, 10)),
+                    rs.getDouble("rate"));
+            });
+        return builder.build();
+    }
+
+    private void importRates(List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        String sql = """
+            INSERT INTO fx_rates(date, currency, rate) VALUES (?, ?, ?)
+            ON CONFLICT (date, currency) DO UPDATE SET rate = excluded.rate
+            """;
+        if ("sqlite".equals(vendor)) {
+            rows.forEach(row -> row[0] = row[0].toString());
+        }
+        jdbcTemplate.batchUpdate(sql, rows);
+        log.info("Imported {} FX rates from {}", rows.size(), source);
+    }
+
+    private List<Object[]> readSource() throws IOException, InterruptedException {
+        if (source.startsWith("http://") || source.startsWith("https://")) {
+            HttpClient client = HttpClient.newHttpClient();
+            HttpResponse<InputStream> response = client.send(
+                HttpRequest.newBuilder(URI.create(source)).GET().build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+            if (response.statusCode() != 200) {
+                throw new IOException("HTTP " + response.statusCode());
+            }
+            try (Reader reader = new InputStreamReader(response.body(), StandardCharsets.UTF_8)) {
+                return parse(reader);
+            }
+        }
+        try (Reader reader = Files.newBufferedReader(Path.of(source))) {
+            return parse(reader);
+        }
+    }
+
+    private List<Object[]> parse(Reader reader) throws IOException {
+        List<Object[]> rows = new ArrayList<>();
+        BufferedReader in = new BufferedReader(reader);
+        String line;
+        while ((line = in.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#") || line.startsWith("date")) {
+                continue;
+            }
+            String[] parts = line.split(",");
+            if (parts.length != 3) {
+                continue;
+            }
+            rows.add(new Object[] { LocalDate.parse(parts[0].trim()), parts[1].trim().toUpperCase(), Double.parseDouble(parts[2].trim()) });
+        }
+        return rows;
+    }
+}
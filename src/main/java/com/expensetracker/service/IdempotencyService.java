@@ -0,0 +1,227 @@
+package com.expensetracker.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Types;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Idempotency-Key handling for retried creates. The first request with a key runs the write
+ * and, in the same database transaction, stores its response in idempotency_keys, so a write
+ * is committed at most once per key: a duplicate that slips past the in-memory store (another
+ * instance, an evicted key) finds a live row for the key, rolls back and gets the stored
+ * response instead. An expired row that was not purged yet is overwritten. Duplicates arriving
+ * while the original is still running wait for it (409 with Retry-After when that takes too
+ * long). Failed writes store nothing, so they can be retried with the same key. Responses are
+ * stored as JSON and read back into the response type on replay, so the replay is encoded by
+ * the converter negotiated for it (JSON, CBOR, Smile) like a first response.
+ */
+@Service
+public class IdempotencyService {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Value("${app.idempotency.ttl-hours:24}")
+    private long ttlHours;
+
+    @Value("${app.idempotency.max-entries:100000}")
+    private int maxEntries;
+
+    @Value("${app.idempotency.stripes:64}")
+    private int stripes;
+
+    // How long a duplicate waits for the original before getting 409
+    @Value("${app.idempotency.wait-timeout-ms:10000}")
+    private long waitTimeoutMs;
+
+    private IdempotencyStore store;
+
+    @PostConstruct
+    void createStore() {
+        store = new IdempotencyStore(stripes, maxEntries);
+    }
+
+    /**
+     * Runs write once per (user, key). The request identifies the call (path and body); reusing
+     * a key for a different request is rejected with 422.
+     */
+    public <T> Outcome execute(Long userId, String key, String path, Object request, HttpStatus status,
+                               Class<T> type, Supplier<T> write) {
+        if (key.isBlank() || key.length() > 255) {
+            throw new RuntimeException("Idempotency-Key must be 1 to 255 characters");
+        }
+        String requestHash = hash(path, request);
+        IdempotencyStore.Key storeKey = new IdempotencyStore.Key(userId, key);
+        IdempotencyStore.Claim claim = store.claim(storeKey, requestHash, System.currentTimeMillis());
+        IdempotencyStore.Entry entry = claim.entry();
+        if (!entry.requestHash.equals(requestHash)) {
+            throw mismatch();
+        }
+        if (!claim.owner()) {
+            return replay(await(entry), type);
+        }
+
+        try {
+            IdempotencyStore.Stored stored = load(userId, key, requestHash);
+            if (stored != null) {
+                store.complete(entry, stored, expiresAt());
+                return replay(stored, type);
+            }
+            Object[] result = new Object[1];
+            stored = transactionTemplate.execute(tx -> {
+                result[0] = write.get();
+                // Serialized inside the transaction, while lazy associations can still load
+                byte[] body = toJson(result[0]);
+                long now = System.currentTimeMillis();
+                int claimed = jdbcTemplate.update("""
+                    INSERT INTO idempotency_keys(user_id, idem_key, request_hash, status, response, created_at, expires_at)
+                    VALUES (?, ?, ?, ?, ?, ?, ?)
+                    ON CONFLICT (user_id, idem_key) DO UPDATE SET
+                        request_hash = excluded.request_hash, status = excluded.status, response = excluded.response,
+                        created_at = excluded.created_at, expires_at = excluded.expires_at
+                    WHERE idempotency_keys.expires_at <= ?
+                    """, userId, key, requestHash, status.value(), new SqlParameterValue(Types.BINARY, body),
+                    now, expiresAt(), now);
+                if (claimed == 0) {
+                    // Committed by a concurrent request we could not see; this attempt's write is undone
+                    tx.setRollbackOnly();
+                    return null;
+                }
+                return new IdempotencyStore.Stored(status.value(), body);
+            });
+            if (stored == null) {
+                stored = load(userId, key, requestHash);
+                if (stored == null) {
+                    throw new RetryLaterException(HttpStatus.CONFLICT, "The request holding this Idempotency-Key has just expired", 1);
+                }
+                store.complete(entry, stored, expiresAt());
+                return replay(stored, type);
+            }
+            store.complete(entry, stored, expiresAt());
+            return new Outcome(result[0], 0, false);
+        } catch (RuntimeException e) {
+            store.fail(storeKey, entry, e);
+            throw e;
+        }
+    }
+
+    // Keys remembered in memory may name writes the restored data does not have
+    @EventListener
+    public void onRestore(BackupService.DatabaseRestoredEvent event) {
+        store.clear();
+    }
+
+    @Scheduled(fixedDelayString = "${app.idempotency.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            shardRouter.onShard(shard, () -> jdbcTemplate.update("DELETE FROM idempotency_keys WHERE expires_at <= ?", now));
+        }
+    }
+
+    private IdempotencyStore.Stored await(IdempotencyStore.Entry entry) {
+        try {
+            return entry.outcome.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new RetryLaterException(HttpStatus.CONFLICT, "A request with this Idempotency-Key is still in progress", 1);
+        } catch (ExecutionException | CompletionException e) {
+            // The original failed; its error is this request's too, and a later retry runs again
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for the original request");
+        }
+    }
+
+    private IdempotencyStore.Stored load(Long userId, String key, String requestHash) {
+        List<Object[]> rows = jdbcTemplate.query(
+            "SELECT request_hash, status, response FROM idempotency_keys WHERE user_id = ? AND idem_key = ? AND expires_at > ?",
+            (rs, i) -> new Object[] { rs.getString("request_hash"), rs.getInt("status"), rs.getBytes("response") },
+            userId, key, System.currentTimeMillis());
+        if (rows.isEmpty()) {
+            return null;
+        }
+        if (!requestHash.equals(rows.get(0)[0])) {
+            throw mismatch();
+        }
+        return new IdempotencyStore.Stored((Integer) rows.get(0)[1], (byte[]) rows.get(0)[2]);
+    }
+
+    private long expiresAt() {
+        return System.currentTimeMillis() + TimeUnit.HOURS.toMillis(ttlHours);
+    }
+
+    private Outcome replay(IdempotencyStore.Stored stored, Class<?> type) {
+        try {
+            return new Outcome(objectMapper.readValue(stored.body(), type), stored.status(), true);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read stored response as " + type.getSimpleName(), e);
+        }
+    }
+
+    private byte[] toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not serialize response: " + e.getOriginalMessage());
+        }
+    }
+
+    private String hash(String path, Object request) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(path.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) '\n');
+            digest.update(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ResponseStatusException mismatch() {
+        return new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+            "Idempotency-Key was already used for a different request");
+    }
+
+    /**
+     * Either the value of a write that just ran, or the response of the request that first used
+     * the key, read back from storage, with the status it was returned with.
+     */
+    public record Outcome(Object value, int replayStatus, boolean replayed) {}
+}
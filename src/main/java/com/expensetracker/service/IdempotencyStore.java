@@ -0,0 +1,114 @@
+package com.expensetracker.service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * In-memory idempotency keys over a fixed number of stripes, each an insertion-ordered map
+ * behind its own lock. A stripe holds at most maxEntries / stripes keys and drops its oldest
+ * beyond that; completed keys also expire after their TTL. Evicted keys are still found in
+ * the idempotency_keys table, so the bound only costs a database lookup.
+ */
+final class IdempotencyStore {
+
+    private final Stripe[] stripes;
+    private final int maxPerStripe;
+
+    IdempotencyStore(int stripeCount, int maxEntries) {
+        if (Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("Stripe count must be a power of two");
+        }
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.maxPerStripe = Math.max(1, maxEntries / stripeCount);
+    }
+
+    /**
+     * The live entry for the key, or a new in-flight entry owned by the caller, who must
+     * complete or remove it.
+     */
+    Claim claim(Key key, String requestHash, long now) {
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            Entry existing = stripe.entries.get(key);
+            if (existing != null && existing.expiresAt > now) {
+                return new Claim(existing, false);
+            }
+            Entry created = new Entry(requestHash);
+            stripe.entries.remove(key);
+            stripe.entries.put(key, created);
+            evict(stripe, now);
+            return new Claim(created, true);
+        }
+    }
+
+    void complete(Entry entry, Stored stored, long expiresAt) {
+        entry.expiresAt = expiresAt;
+        entry.outcome.complete(stored);
+    }
+
+    // Forgets a failed attempt so the next request with the key runs again
+    void fail(Key key, Entry entry, RuntimeException error) {
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            stripe.entries.remove(key, entry);
+        }
+        entry.outcome.completeExceptionally(error);
+    }
+
+    // In-flight entries are dropped too; their owners still complete them for their waiters
+    void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.entries.clear();
+            }
+        }
+    }
+
+    private void evict(Stripe stripe, long now) {
+        Iterator<Entry> entries = stripe.entries.values().iterator();
+        int excess = stripe.entries.size() - maxPerStripe;
+        while (entries.hasNext()) {
+            Entry entry = entries.next();
+            if (excess > 0) {
+                entries.remove();
+                excess--;
+            } else if (entry.expiresAt <= now) {
+                entries.remove();
+            } else {
+                // Insertion order: later entries are newer, stop at the first live one
+                break;
+            }
+        }
+    }
+
+    private Stripe stripe(Key key) {
+        int h = key.hashCode();
+        return stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+    }
+
+    record Key(Long userId, String key) {}
+
+    record Stored(int status, byte[] body) {}
+
+    record Claim(Entry entry, boolean owner) {}
+
+    static final class Entry {
+        final String requestHash;
+        final CompletableFuture<Stored> outcome = new CompletableFuture<>();
+        // In flight until completed
+        volatile long expiresAt = Long.MAX_VALUE;
+
+        Entry(String requestHash) {
+            this.requestHash = requestHash;
+        }
+    }
+
+    private static final class Stripe {
+        final Map<Key, Entry> entries = new LinkedHashMap<>();
+    }
+}
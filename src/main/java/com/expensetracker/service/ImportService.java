@@ -0,0 +1,481 @@
+package com.expensetracker.service;
+
+import com.expensetracker.entity.Money;
+import com.expensetracker.entity.TxType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bank statement CSV import. The upload is spooled to a temp file and parsed in chunks by a
+ * single worker, so neither the request nor the parser holds the file in memory. Each row gets
+ * a content hash of (account, date, amount, normalized note, occurrence in the file); rows whose
+ * hash already exists for the account are skipped, which makes re-importing an overlapping
+ * statement safe. Batches are staged (COPY on Postgres, batched inserts on SQLite) and moved
+ * into transactions with one INSERT ... SELECT that filters the duplicates.
+ */
+@Service
+public class ImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportService.class);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private CategorizationService categorizationService;
+
+    @Autowired
+    private AccountLocks accountLocks;
+
+    @Autowired
+    private ForecastService forecastService;
+
+    @Value("${app.db.vendor}")
+    private String vendor;
+
+    @Value("${app.import.batch-size:2000}")
+    private int batchSize;
+
+    @Value("${app.import.max-bytes:536870912}")
+    private long maxBytes;
+
+    // Imports waiting behind the running one; more are refused
+    @Value("${app.import.max-queued:4}")
+    private int maxQueued;
+
+    // Rejected rows listed in the status; all of them are counted
+    @Value("${app.import.max-rejects:100}")
+    private int maxRejects;
+
+    @Value("${app.import.retention-minutes:60}")
+    private long retentionMinutes;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    // One worker: imports never race each other on the duplicate check, and SQLite has a single writer anyway
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void start() {
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(maxQueued),
+            runnable -> {
+                Thread thread = new Thread(runnable, "csv-import");
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    public ImportStatus submit(Long userId, Long accountId, Mapping mapping, InputStream body) {
+        Integer owned = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM accounts WHERE id = ? AND user_id = ?", Integer.class, accountId, userId);
+        if (owned == null || owned == 0) {
+            throw new RuntimeException("Account not found");
+        }
+        mapping.formatter();
+
+        Path file = spool(body);
+        Job job;
+        try {
+            job = new Job(UUID.randomUUID().toString(), userId, accountId, mapping, file, Files.size(file));
+            jobs.put(job.id, job);
+            executor.execute(() -> run(job));
+        } catch (IOException e) {
+            delete(file);
+            throw new UncheckedIOException(e);
+        } catch (RejectedExecutionException e) {
+            delete(file);
+            throw new RuntimeException("Too many imports in progress, try again later");
+        }
+        return job.status();
+    }
+
+    // Null when unknown, expired or owned by another user
+    public ImportStatus status(String id, Long userId) {
+        Job job = jobs.get(id);
+        return job != null && job.userId.equals(userId) ? job.status() : null;
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void purgeFinished() {
+        Instant cutoff = Instant.now().minusSeconds(retentionMinutes * 60);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    private Path spool(InputStream body) {
+        Path file = null;
+        try {
+            file = Files.createTempFile("import-", ".csv");
+            try (ReadableByteChannel in = Channels.newChannel(body);
+                 FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                long position = 0;
+                long read;
+                while ((read = out.transferFrom(in, position, 1 << 20)) > 0) {
+                    position += read;
+                    if (position > maxBytes) {
+                        throw new RuntimeException("File is larger than " + maxBytes + " bytes");
+                    }
+                }
+            }
+            return file;
+        } catch (IOException e) {
+            delete(file);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            delete(file);
+            throw e;
+        }
+    }
+
+    private void run(Job job) {
+        job.state = "RUNNING";
+        try {
+            shardRouter.forUser(job.userId, () -> {
+                process(job);
+                return null;
+            });
+            job.state = "COMPLETED";
+            log.info("Imported {} of {} rows into account {} ({} duplicates, {} rejected)",
+                job.inserted, job.rows, job.accountId, job.duplicates, job.rejected);
+        } catch (RuntimeException e) {
+            job.state = "FAILED";
+            job.error = e.getMessage();
+            log.warn("Import {} failed after {} rows", job.id, job.rows, e);
+        } finally {
+            job.finishedAt = Instant.now();
+            delete(job.file);
+            if (job.inserted > 0) {
+                forecastService.invalidate(job.userId);
+            }
+        }
+    }
+
+    private void process(Job job) {
+        Mapping mapping = job.mapping;
+        DateTimeFormatter formatter = mapping.formatter();
+        try (FileChannel channel = FileChannel.open(job.file, StandardOpenOption.READ)) {
+            CsvReader reader = new CsvReader(channel, mapping.delimiter());
+            List<String> header = reader.next();
+            if (header == null) {
+                throw new RuntimeException("File is empty");
+            }
+            int dateIndex = column(header, mapping.dateColumn());
+            int amountIndex = column(header, mapping.amountColumn());
+            int noteIndex = mapping.noteColumn() != null ? column(header, mapping.noteColumn()) : -1;
+
+            MessageDigest digest = sha256();
+            // Per (date, amount, note) digest prefix, how many rows of this file had it so far; keeps
+            // identical rows of one statement (two equal coffees on a day) apart
+            Map<Long, Integer> occurrences = new HashMap<>();
+            List<Row> batch = new ArrayList<>(batchSize);
+            List<String> fields;
+            while ((fields = reader.next()) != null) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new RuntimeException("Import interrupted");
+                }
+                job.rows++;
+                Row row = parse(job, fields, dateIndex, amountIndex, noteIndex, formatter, reader.recordLine());
+                if (row != null) {
+                    byte[] base = digest.digest((job.accountId + "|" + row.date + "|" + row.amount.toPlainString()
+                        + "|" + normalize(row.note)).getBytes(StandardCharsets.UTF_8));
+                    int occurrence = occurrences.merge(ByteBuffer.wrap(base).getLong(), 1, Integer::sum);
+                    digest.update(base);
+                    row.hash = HexFormat.of().formatHex(digest.digest(ByteBuffer.allocate(4).putInt(occurrence).array()), 0, 16);
+                    batch.add(row);
+                    if (batch.size() >= batchSize) {
+                        write(job, batch);
+                        batch.clear();
+                    }
+                }
+                job.bytesRead = channel.position();
+            }
+            write(job, batch);
+            job.bytesRead = job.bytesTotal;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Row parse(Job job, List<String> fields, int dateIndex, int amountIndex, int noteIndex,
+                      DateTimeFormatter formatter, long line) {
+        int needed = Math.max(dateIndex, Math.max(amountIndex, noteIndex));
+        if (fields.size() <= needed) {
+            job.reject(line, "Expected at least " + (needed + 1) + " columns, found " + fields.size(), maxRejects);
+            return null;
+        }
+        LocalDate date;
+        try {
+            date = LocalDate.parse(fields.get(dateIndex).trim(), formatter);
+        } catch (DateTimeParseException e) {
+            job.reject(line, "Invalid date: " + fields.get(dateIndex), maxRejects);
+            return null;
+        }
+        BigDecimal amount = parseAmount(fields.get(amountIndex), job.mapping.decimalComma());
+        if (amount == null) {
+            job.reject(line, "Invalid amount: " + fields.get(amountIndex), maxRejects);
+            return null;
+        }
+        if (amount.signum() == 0) {
+            job.reject(line, "Zero amount", maxRejects);
+            return null;
+        }
+        String note = noteIndex >= 0 ? fields.get(noteIndex).trim() : "";
+        Row row = new Row();
+        row.date = date;
+        row.amount = amount;
+        row.note = note.isEmpty() ? null : note;
+        row.type = amount.signum() < 0 ? TxType.EXPENSE : TxType.INCOME;
+        row.categoryId = categorizationService.categorize(job.userId, job.accountId, row.type, amount, row.note);
+        return row;
+    }
+
+    // Accepts "1,234.56", "-12.30", "(12.30)" and, with decimalComma, "1.234,56"; null if unparseable
+    static BigDecimal parseAmount(String text, boolean decimalComma) {
+        String value = text.trim();
+        boolean negative = value.startsWith("(") && value.endsWith(")");
+        if (negative) {
+            value = value.substring(1, value.length() - 1);
+        }
+        StringBuilder digits = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isDigit(c) || c == '-' || c == '+') {
+                digits.append(c);
+            } else if (c == (decimalComma ? ',' : '.')) {
+                digits.append('.');
+            }
+            // Thousands separators, spaces and currency symbols are dropped
+        }
+        try {
+            BigDecimal amount = new BigDecimal(digits.toString()).setScale(2, RoundingMode.HALF_UP);
+            return negative ? amount.negate() : amount;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String normalize(String note) {
+        return note == null ? "" : note.toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+    }
+
+    private void write(Job job, List<Row> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Integer inserted = transactionTemplate.execute(status -> {
+            accountLocks.lock(job.accountId);
+            stage(job, batch);
+            return jdbcTemplate.update("""
+                INSERT INTO transactions(user_id, account_id, category_id, type, date, amount, note, content_hash)
+                SELECT s.user_id, s.account_id, s.category_id, s.type, s.date, s.amount, s.note, s.content_hash
+                FROM import_staging s
+                WHERE NOT EXISTS (SELECT 1 FROM transactions t WHERE t.account_id = s.account_id AND t.content_hash = s.content_hash)
+                  AND NOT EXISTS (SELECT 1 FROM transactions_archive a WHERE a.account_id = s.account_id AND a.content_hash = s.content_hash)
+                ORDER BY s.seq
+                """);
+        });
+        int count = inserted != null ? inserted : 0;
+        job.inserted += count;
+        job.duplicates += batch.size() - count;
+    }
+
+    // Fills the connection's staging table with the batch, inside the caller's transaction
+    private void stage(Job job, List<Row> batch) {
+        if ("sqlite".equals(vendor)) {
+            jdbcTemplate.execute("""
+                CREATE TEMP TABLE IF NOT EXISTS import_staging (
+                    seq INTEGER, user_id INTEGER, account_id INTEGER, category_id INTEGER, type TEXT,
+                    date TEXT, amount INTEGER, note TEXT, content_hash TEXT)
+                """);
+            jdbcTemplate.update("DELETE FROM import_staging");
+            List<Object[]> rows = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                Row row = batch.get(i);
+                rows.add(new Object[] { i, job.userId, job.accountId, row.categoryId, row.type.name(),
+                    row.date.toString(), Money.toMinor(row.amount), row.note, row.hash });
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO import_staging VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+            return;
+        }
+
+        jdbcTemplate.execute("""
+            CREATE TEMP TABLE IF NOT EXISTS import_staging (
+                seq INTEGER, user_id BIGINT, account_id BIGINT, category_id BIGINT, type tx_type,
+                date DATE, amount BIGINT, note TEXT, content_hash VARCHAR(32))
+            """);
+        jdbcTemplate.update("TRUNCATE import_staging");
+        StringBuilder csv = new StringBuilder(batch.size() * 96);
+        for (int i = 0; i < batch.size(); i++) {
+            Row row = batch.get(i);
+            csv.append(i).append(',').append(job.userId).append(',').append(job.accountId).append(',')
+                .append(row.categoryId != null ? row.categoryId.toString() : "").append(',')
+                .append(row.type.name()).append(',').append(row.date).append(',')
+                .append(Money.toMinor(row.amount)).append(',')
+                .append(row.note != null ? '"' + row.note.replace("\"", "\"\"") + '"' : "").append(',')
+                .append(row.hash).append('\n');
+        }
+        jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI()
+                    .copyIn("COPY import_staging FROM STDIN (FORMAT csv)", new StringReader(csv.toString()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static int column(List<String> header, String name) {
+        for (int i = 0; i < header.size(); i++) {
+            if (header.get(i).trim().equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        throw new RuntimeException("Column not found: " + name);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void delete(Path file) {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Could not delete {}", file, e);
+            }
+        }
+    }
+
+    private static final class Row {
+        LocalDate date;
+        BigDecimal amount;
+        String note;
+        TxType type;
+        Long categoryId;
+        String hash;
+    }
+
+    // Counters are written by the worker only and read by status polls
+    private static final class Job {
+        final String id;
+        final Long userId;
+        final Long accountId;
+        final Mapping mapping;
+        final Path file;
+        final long bytesTotal;
+        final List<Reject> rejects = new ArrayList<>();
+        volatile String state = "QUEUED";
+        volatile long bytesRead;
+        volatile long rows;
+        volatile long inserted;
+        volatile long duplicates;
+        volatile long rejected;
+        volatile String error;
+        volatile Instant finishedAt;
+
+        Job(String id, Long userId, Long accountId, Mapping mapping, Path file, long bytesTotal) {
+            this.id = id;
+            this.userId = userId;
+            this.accountId = accountId;
+            this.mapping = mapping;
+            this.file = file;
+            this.bytesTotal = bytesTotal;
+        }
+
+        void reject(long line, String reason, int maxListed) {
+            rejected++;
+            synchronized (rejects) {
+                if (rejects.size() < maxListed) {
+                    rejects.add(new Reject(line, reason));
+                }
+            }
+        }
+
+        ImportStatus status() {
+            List<Reject> listed;
+            synchronized (rejects) {
+                listed = List.copyOf(rejects);
+            }
+            return new ImportStatus(id, state, bytesTotal, bytesRead, rows, inserted, duplicates, rejected, listed, error);
+        }
+    }
+
+    /**
+     * Column names are matched case-insensitively against the header row. Negative amounts
+     * become expenses and positive ones incomes.
+     */
+    public record Mapping(String dateColumn, String amountColumn, String noteColumn, String dateFormat,
+                          char delimiter, boolean decimalComma) {
+
+        DateTimeFormatter formatter() {
+            try {
+                return DateTimeFormatter.ofPattern(dateFormat);
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException("Invalid date format: " + dateFormat);
+            }
+        }
+    }
+
+    public record Reject(long line, String reason) {}
+
+    public record ImportStatus(String id, String state, long bytesTotal, long bytesRead, long rows, long inserted,
+                               long duplicates, long rejected, List<Reject> rejects, String error) {}
+}
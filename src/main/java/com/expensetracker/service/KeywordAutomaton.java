@@ -0,0 +1,194 @@
+package com.expensetracker.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Case-insensitive Aho-Corasick automaton over a fixed keyword set. Each node keeps its
+ * outgoing edges as a sorted char array; a scan costs one pass over the text however many
+ * keywords there are, and reports every keyword index that occurs in it.
+ */
+final class KeywordAutomaton {
+
+    private static final char[] NO_CHARS = new char[0];
+    private static final int[] NO_INTS = new int[0];
+
+    private char[][] edgeChars = new char[1][];
+    private int[][] edgeTargets = new int[1][];
+    private int[] fail;
+    // Nearest node on the fail chain that ends a keyword, -1 if none
+    private int[] dictLink;
+    private int[][] outputs = new int[1][];
+    private int size = 1;
+
+    KeywordAutomaton(List<String> keywords) {
+        edgeChars[0] = NO_CHARS;
+        edgeTargets[0] = NO_INTS;
+        outputs[0] = NO_INTS;
+        for (int k = 0; k < keywords.size(); k++) {
+            String keyword = keywords.get(k);
+            int node = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = fold(keyword.charAt(i));
+                int next = next(node, c);
+                node = next >= 0 ? next : addEdge(node, c);
+            }
+            outputs[node] = append(outputs[node], k);
+        }
+        link();
+    }
+
+    // Sets the bit of every keyword found in text
+    void scan(CharSequence text, BitSet found) {
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = fold(text.charAt(i));
+            int next;
+            while ((next = next(node, c)) < 0 && node != 0) {
+                node = fail[node];
+            }
+            node = Math.max(next, 0);
+            for (int out = outputs[node].length > 0 ? node : dictLink[node]; out > 0; out = dictLink[out]) {
+                for (int k : outputs[out]) {
+                    found.set(k);
+                }
+            }
+        }
+    }
+
+    private void link() {
+        fail = new int[size];
+        dictLink = new int[size];
+        dictLink[0] = -1;
+        int[] queue = new int[size];
+        int head = 0;
+        int tail = 0;
+        for (int child : edgeTargets[0]) {
+            dictLink[child] = -1;
+            queue[tail++] = child;
+        }
+        while (head < tail) {
+            int node = queue[head++];
+            for (int e = 0; e < edgeChars[node].length; e++) {
+                char c = edgeChars[node][e];
+                int child = edgeTargets[node][e];
+                int f = fail[node];
+                int next;
+                while ((next = next(f, c)) < 0 && f != 0) {
+                    f = fail[f];
+                }
+                fail[child] = Math.max(next, 0);
+                dictLink[child] = outputs[fail[child]].length > 0 ? fail[child] : dictLink[fail[child]];
+                queue[tail++] = child;
+            }
+        }
+    }
+
+    private int next(int node, char c) {
+        int i = Arrays.binarySearch(edgeChars[node], c);
+        return i >= 0 ? edgeTargets[node][i] : -1;
+    }
+
+    private int addEdge(int node, char c) {
+        if (size == edgeChars.length) {
+            int capacity = size * 2;
+            edgeChars = Arrays.copyOf(edgeChars, capacity);
+            edgeTargets = Arrays.copyOf(edgeTargets, capacity);
+            outputs = Arrays.copyOf(outputs, capacity);
+        }
+        int child = size++;
+        edgeChars[child] = NO_CHARS;
+        edgeTargets[child] = NO_INTS;
+        outputs[child] = NO_INTS;
+
+        int at = -Arrays.binarySearch(edgeChars[node], c) - 1;
+        char[] chars = new char[edgeChars[node].length + 1];
+        int[] targets = new int[chars.length];
+        System.arraycopy(edgeChars[node], 0, chars, 0, at);
+        System.arraycopy(edgeTargets[node], 0, targets, 0, at);
+        chars[at] = c;
+        targets[at] = child;
+        System.arraycopy(edgeChars[node], at, chars, at + 1, chars.length - at - 1);
+        System.arraycopy(edgeTargets[node], at, targets, at + 1, chars.length - at - 1);
+        edgeChars[node] = chars;
+        edgeTargets[node] = targets;
+        return child;
+    }
+
+    private static int[] append(int[] values, int value) {
+        int[] result = Arrays.copyOf(values, values.length + 1);
+        result[values.length] = value;
+        return result;
+    }
+
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    // Longest run of literal characters every match of the regex must contain, or null
+    static String requiredLiteral(String regex) {
+        // Alternation, quoting and inline flags (comments mode) make runs unreliable
+        if (regex.indexOf('|') >= 0 || regex.contains("\\Q") || regex.contains("(?")) {
+            return null;
+        }
+        List<String> runs = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        int depth = 0;
+        for (int i = 0; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\' && i + 1 < regex.length()) {
+                char escaped = regex.charAt(++i);
+                if ("xuc0123456789pPNk".indexOf(escaped) >= 0) {
+                    // Escapes with an argument (\x41, \p{L}, backreferences) are not worth parsing
+                    return null;
+                }
+                if (depth == 0 && !Character.isLetterOrDigit(escaped)) {
+                    run.append(escaped);
+                } else {
+                    // Character classes (\d, \s...) and escapes inside groups end the run
+                    flush(run, runs);
+                }
+                continue;
+            }
+            switch (c) {
+                case '(', '[' -> { depth++; flush(run, runs); }
+                case ')', ']' -> { depth = Math.max(0, depth - 1); flush(run, runs); }
+                case '?', '*', '{' -> {
+                    // The quantified character is optional, so it cannot be part of the run
+                    if (depth == 0 && run.length() > 0) {
+                        run.setLength(run.length() - 1);
+                    }
+                    flush(run, runs);
+                    if (c == '{') {
+                        while (i + 1 < regex.length() && regex.charAt(i) != '}') {
+                            i++;
+                        }
+                    }
+                }
+                case '+', '.', '^', '$' -> flush(run, runs);
+                default -> {
+                    if (depth == 0) {
+                        run.append(c);
+                    }
+                }
+            }
+        }
+        flush(run, runs);
+        String longest = null;
+        for (String literal : runs) {
+            if (longest == null || literal.length() > longest.length()) {
+                longest = literal;
+            }
+        }
+        return longest;
+    }
+
+    private static void flush(StringBuilder run, List<String> runs) {
+        if (run.length() > 0) {
+            runs.add(run.toString());
+            run.setLength(0);
+        }
+    }
+}
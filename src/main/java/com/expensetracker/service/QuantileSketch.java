@@ -0,0 +1,108 @@
+package com.expensetracker.service;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Log-bucketed streaming quantile sketch (DDSketch style) with a fixed relative accuracy.
+ * Bins are kept in a dense array capped at maxBins; when the value range grows past the
+ * cap the lowest bins are collapsed, so high quantiles stay accurate and memory is bounded.
+ */
+final class QuantileSketch {
+
+    private static final double RELATIVE_ACCURACY = 0.02;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    // Values below this (including zero) share a single bin
+    private static final double MIN_VALUE = 1.0;
+
+    private final int maxBins;
+    private int[] counts = new int[0];
+    private int minIndex;
+    private long zeroCount;
+    private long count;
+
+    QuantileSketch(int maxBins) {
+        this.maxBins = maxBins;
+    }
+
+    long count() { return count; }
+
+    void add(double value) {
+        count++;
+        if (value < MIN_VALUE) {
+            zeroCount++;
+            return;
+        }
+        int index = (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+        int slot = slot(index);
+        counts[slot]++;
+    }
+
+    double quantile(double q) {
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (q * (count - 1));
+        long seen = zeroCount;
+        if (rank < seen) {
+            return 0;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen > rank) {
+                return 2 * Math.pow(GAMMA, minIndex + i) / (GAMMA + 1);
+            }
+        }
+        return 2 * Math.pow(GAMMA, minIndex + counts.length - 1) / (GAMMA + 1);
+    }
+
+    private int slot(int index) {
+        if (counts.length == 0) {
+            counts = new int[1];
+            minIndex = index;
+            return 0;
+        }
+        int maxIndex = minIndex + counts.length - 1;
+        if (index >= minIndex && index <= maxIndex) {
+            return index - minIndex;
+        }
+        int newMin = Math.min(minIndex, index);
+        int newMax = Math.max(maxIndex, index);
+        if (newMax - newMin + 1 > maxBins) {
+            newMin = newMax - maxBins + 1;
+        }
+        int[] resized = new int[newMax - newMin + 1];
+        for (int i = 0; i < counts.length; i++) {
+            int target = Math.max(minIndex + i, newMin) - newMin;
+            resized[target] += counts[i];
+        }
+        counts = resized;
+        minIndex = newMin;
+        return Math.max(index, newMin) - newMin;
+    }
+
+    int serializedSize() {
+        return 8 + 8 + 4 + 4 + 4 * counts.length;
+    }
+
+    void writeTo(ByteBuffer buffer) {
+        buffer.putLong(count).putLong(zeroCount).putInt(minIndex).putInt(counts.length);
+        for (int c : counts) {
+            buffer.putInt(c);
+        }
+    }
+
+    static QuantileSketch readFrom(ByteBuffer buffer, int maxBins) {
+        QuantileSketch sketch = new QuantileSketch(maxBins);
+        sketch.count = buffer.getLong();
+        sketch.zeroCount = buffer.getLong();
+        sketch.minIndex = buffer.getInt();
+        int n = buffer.getInt();
+        int[] counts = new int[n];
+        for (int i = 0; i < n; i++) {
+            counts[i] = buffer.getInt();
+        }
+        sketch.counts = counts;
+        return sketch;
+    }
+}
@@ -0,0 +1,298 @@
+package com.expensetracker.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.sqlite.SQLiteConnection;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs ReportService reports in the background for ranges too large to answer within a
+ * request. Jobs run on a bounded pool; a submit matching a queued or running job of the same
+ * user, report and range joins it instead of starting another. Finished jobs (results as JSON,
+ * or the failure) are written to report_results on the user's shard and expire after the TTL.
+ * A job runs its report in one transaction, so cancelling it can stop the query in flight.
+ */
+@Service
+public class ReportJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(ReportJobService.class);
+
+    @Autowired
+    private ReportService reportService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${app.db.vendor}")
+    private String vendor;
+
+    @Value("${app.report-jobs.workers:2}")
+    private int workers;
+
+    @Value("${app.report-jobs.max-queued:20}")
+    private int maxQueued;
+
+    @Value("${app.report-jobs.result-ttl-minutes:60}")
+    private long resultTtlMinutes;
+
+    // Queued and running jobs; finished ones are only in report_results
+    private final Map<String, Job> active = new ConcurrentHashMap<>();
+    private final Map<JobKey, Job> byKey = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void start() {
+        AtomicInteger threads = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(maxQueued),
+            runnable -> {
+                Thread thread = new Thread(runnable, "report-job-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    public JobStatus submit(Long userId, String report, LocalDate from, LocalDate to, String resolution) {
+        if (from.isAfter(to)) {
+            throw new RuntimeException("from is after to");
+        }
+        if (!List.of("monthly", "by-category", "balance-series").contains(report)) {
+            throw new RuntimeException("Unknown report: " + report);
+        }
+        if ("balance-series".equals(report) && !List.of("day", "week", "month").contains(resolution)) {
+            throw new RuntimeException("Unsupported resolution: " + resolution);
+        }
+        JobKey key = new JobKey(userId, report, from, to, "balance-series".equals(report) ? resolution : null);
+        RuntimeException[] rejected = new RuntimeException[1];
+        Job job = byKey.compute(key, (k, existing) -> {
+            if (existing != null) {
+                return existing;
+            }
+            Job created = new Job(UUID.randomUUID().toString(), k);
+            created.task = new FutureTask<>(() -> run(created), null);
+            active.put(created.id, created);
+            try {
+                executor.execute(created.task);
+                return created;
+            } catch (RejectedExecutionException e) {
+                active.remove(created.id);
+                rejected[0] = new RuntimeException("Too many report jobs queued, try again later");
+                return null;
+            }
+        });
+        if (rejected[0] != null) {
+            throw rejected[0];
+        }
+        return job.status();
+    }
+
+    // Null when unknown, expired or owned by another user
+    public JobStatus status(String id, Long userId) {
+        Job job = active.get(id);
+        if (job != null) {
+            return job.key.userId().equals(userId) ? job.status() : null;
+        }
+        List<JobStatus> stored = shardRouter.forUser(userId, () -> jdbcTemplate.query("""
+            SELECT id, report, from_date, to_date, state, error, created_at, finished_at
+            FROM report_results
+            WHERE id = ? AND user_id = ? AND expires_at > ?
+            """, (rs, i) -> new JobStatus(rs.getString("id"), rs.getString("report"),
+                LocalDate.parse(rs.getString("from_date").substring(0, 10)),
+                LocalDate.parse(rs.getString("to_date").substring(0, 10)),
+                rs.getString("state"), rs.getString("error"),
+                Instant.ofEpochMilli(rs.getLong("created_at")), Instant.ofEpochMilli(rs.getLong("finished_at"))),
+            id, userId, System.currentTimeMillis()));
+        return stored.isEmpty() ? null : stored.get(0);
+    }
+
+    // JSON of a completed job, or null if it is not (or no longer) available
+    public byte[] result(String id, Long userId) {
+        List<byte[]> results = shardRouter.forUser(userId, () -> jdbcTemplate.query(
+            "SELECT result FROM report_results WHERE id = ? AND user_id = ? AND state = 'COMPLETED' AND expires_at > ?",
+            (rs, i) -> rs.getBytes("result"), id, userId, System.currentTimeMillis()));
+        return results.isEmpty() ? null : results.get(0);
+    }
+
+    // Cancels a queued or running job (for every caller that joined it); finished jobs are left as they are
+    public JobStatus cancel(String id, Long userId) {
+        Job job = active.get(id);
+        if (job == null || !job.key.userId().equals(userId)) {
+            return status(id, userId);
+        }
+        byKey.remove(job.key, job);
+        job.task.cancel(true);
+        // Claimed first, so the failure of the interrupted query is dropped
+        if (job.claim("CANCELLED")) {
+            cancelQuery(job);
+            store(job, "CANCELLED", null, null);
+        }
+        return status(id, userId);
+    }
+
+    @Scheduled(fixedDelayString = "${app.report-jobs.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        long now = System.currentTimeMillis();
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            shardRouter.onShard(shard, () -> jdbcTemplate.update("DELETE FROM report_results WHERE expires_at <= ?", now));
+        }
+    }
+
+    private void run(Job job) {
+        synchronized (job) {
+            if (job.finished) {
+                return;
+            }
+            job.state = "RUNNING";
+        }
+        JobKey key = job.key;
+        try {
+            Object result = shardRouter.forUser(key.userId(), () -> transactionTemplate.execute(tx -> {
+                jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+                    job.attach(con);
+                    return null;
+                });
+                try {
+                    return reportService.run(key.report(), key.userId(), key.from(), key.to(), key.resolution());
+                } finally {
+                    job.attach(null);
+                }
+            }));
+            finish(job, "COMPLETED", objectMapper.writeValueAsBytes(result), null);
+        } catch (JsonProcessingException | RuntimeException e) {
+            if (!job.isFinished()) {
+                log.warn("Report job {} ({}) failed", job.id, key.report(), e);
+            }
+            finish(job, "FAILED", null, e.getMessage());
+        }
+    }
+
+    // The first outcome wins: a cancelled job's late result or failure is dropped
+    private void finish(Job job, String state, byte[] result, String error) {
+        if (job.claim(state)) {
+            store(job, state, result, error);
+        }
+    }
+
+    private void store(Job job, String state, byte[] result, String error) {
+        JobKey key = job.key;
+        long now = System.currentTimeMillis();
+        try {
+            shardRouter.forUser(key.userId(), () -> jdbcTemplate.update("""
+                INSERT INTO report_results(id, user_id, report, from_date, to_date, state, result, error, created_at, finished_at, expires_at)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                """, job.id, key.userId(), key.report(), dateParam(key.from()), dateParam(key.to()), state,
+                new SqlParameterValue(Types.BINARY, result), error,
+                job.createdAt.toEpochMilli(), now, now + resultTtlMinutes * 60_000));
+        } finally {
+            // Stored before it leaves memory, so status polls never miss it
+            active.remove(job.id);
+            byKey.remove(key, job);
+        }
+    }
+
+    // Stops the statement running on the job's connection, which is what Statement.cancel() does in both drivers
+    private void cancelQuery(Job job) {
+        synchronized (job) {
+            if (job.connection == null) {
+                return;
+            }
+            try {
+                if ("sqlite".equals(vendor)) {
+                    job.connection.unwrap(SQLiteConnection.class).getDatabase().interrupt();
+                } else {
+                    job.connection.unwrap(PGConnection.class).cancelQuery();
+                }
+            } catch (SQLException e) {
+                log.warn("Could not cancel the query of report job {}", job.id, e);
+            }
+        }
+    }
+
+    private Object dateParam(LocalDate date) {
+        return "sqlite".equals(vendor) ? date.toString() : date;
+    }
+
+    private record JobKey(Long userId, String report, LocalDate from, LocalDate to, String resolution) {}
+
+    private static final class Job {
+        final String id;
+        final JobKey key;
+        final Instant createdAt = Instant.now();
+        FutureTask<Void> task;
+        volatile String state = "QUEUED";
+        boolean finished;
+        // The connection the report runs on, while it runs; cancelQuery() holds the lock so it is not released meanwhile
+        Connection connection;
+
+        Job(String id, JobKey key) {
+            this.id = id;
+            this.key = key;
+        }
+
+        synchronized boolean isFinished() {
+            return finished;
+        }
+
+        synchronized boolean claim(String outcome) {
+            if (finished) {
+                return false;
+            }
+            finished = true;
+            state = outcome;
+            return true;
+        }
+
+        synchronized void attach(Connection connection) {
+            this.connection = connection;
+        }
+
+        JobStatus status() {
+            return new JobStatus(id, key.report(), key.from(), key.to(), state, null, createdAt, null);
+        }
+    }
+
+    public record JobStatus(String id, String report, LocalDate from, LocalDate to, String state, String error,
+                            Instant createdAt, Instant finishedAt) {}
+}
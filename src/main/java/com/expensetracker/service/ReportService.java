@@ -1,13 +1,24 @@
 package com.expensetracker.service;
 
+import com.expensetracker.entity.Money;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
 import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class ReportService {
@@ -15,62 +26,363 @@ public class ReportService {
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private FxRateService fxRateService;
+
+    @Autowired
+    private FanOut fanOut;
+
     @Value("${app.db.vendor}")
     private String vendor;
 
-    public List<Map<String, Object>> monthlyTotals(Long userId, LocalDate from, LocalDate to) {
-        String sql;
-        
-        if ("sqlite".equals(vendor)) {
-            sql = """
-                SELECT substr(date,1,7) AS ym, 
-                       SUM(CASE WHEN type IN ('INCOME','TRANSFER_IN') THEN amount ELSE -amount END) total 
-                FROM transactions 
-                WHERE user_id = ? AND date BETWEEN ? AND ? 
-                GROUP BY ym 
-                ORDER BY ym
-                """;
-        } else {
-            sql = """
-                SELECT to_char(date,'YYYY-MM') AS ym, 
-                       SUM(CASE WHEN type IN ('INCOME','TRANSFER_IN') THEN amount ELSE -amount END) total 
-                FROM transactions 
-                WHERE user_id = ? AND date BETWEEN ? AND ? 
-                GROUP BY ym 
-                ORDER BY ym
-                """;
-        }
-        
-        return jdbcTemplate.queryForList(sql, userId, from.toString(), to.toString());
+    // Runs a report by name, so the same reports can be served directly or queued as jobs
+    public Object run(String report, Long userId, LocalDate from, LocalDate to, String resolution) {
+        return switch (report) {
+            case "monthly" -> monthlyTotals(userId, from, to);
+            case "by-category" -> totalsByCategory(userId, from, to);
+            case "balance-series" -> balanceSeries(userId, from, to, resolution);
+            default -> throw new RuntimeException("Unknown report: " + report);
+        };
     }
 
-    public List<Map<String, Object>> totalsByCategory(Long userId, LocalDate from, LocalDate to) {
-        String sql;
-        
-        if ("sqlite".equals(vendor)) {
-            sql = """
-                SELECT c.type, c.name as category, 
-                       SUM(CASE WHEN t.type = 'EXPENSE' THEN -t.amount ELSE 0 END) as total
-                FROM transactions t
-                LEFT JOIN categories c ON t.category_id = c.id
-                WHERE t.user_id = ? AND t.date BETWEEN ? AND ? 
-                  AND t.type = 'EXPENSE'
-                GROUP BY c.type, c.name
-                ORDER BY total DESC
-                """;
-        } else {
-            sql = """
-                SELECT c.type, c.name as category, 
-                       SUM(CASE WHEN t.type = 'EXPENSE' THEN -t.amount ELSE 0 END) as total
-                FROM transactions t
-                LEFT JOIN categories c ON t.category_id = c.id
-                WHERE t.user_id = ? AND t.date BETWEEN ? AND ? 
-                  AND t.type = 'EXPENSE'
+    public List<MonthlyTotal> monthlyTotals(Long userId, LocalDate from, LocalDate to) {
+        // Aggregate per (date, account) so each group can be converted to the base currency
+        // with the rate of its own day, then roll up to months in memory. Archived rows of a
+        // partial first or last month are read with the hot ones.
+        ArchiveRange range = ArchiveRange.of(from, to);
+        String sql = """
+            SELECT date, account_id,
+                   SUM(CASE WHEN type IN ('INCOME','TRANSFER_IN') THEN amount ELSE -amount END) total
+            FROM (
+                SELECT date, account_id, type, amount FROM transactions
+                WHERE user_id = ? AND date BETWEEN ? AND ?
+                UNION ALL
+                SELECT date, account_id, type, amount FROM transactions_archive
+                WHERE user_id = ? AND (date BETWEEN ? AND ? OR date BETWEEN ? AND ?)
+            ) t
+            GROUP BY date, account_id
+            """;
+
+        // Whole archived months come from their summaries (already in the base currency)
+        CompletableFuture<Map<String, long[]>> archived = fanOut.fork(userId, () -> {
+            Map<String, long[]> sums = new HashMap<>();
+            jdbcTemplate.query("""
+                SELECT period, type, SUM(total_base) AS total
+                FROM transaction_summaries
+                WHERE user_id = ? AND period BETWEEN ? AND ?
+                GROUP BY period, type
+                """, rs -> {
+                long total = rs.getLong("total");
+                String type = rs.getString("type");
+                sums.computeIfAbsent(rs.getString("period").substring(0, 7), k -> new long[1])[0] +=
+                    "INCOME".equals(type) || "TRANSFER_IN".equals(type) ? total : -total;
+            }, userId, dateParam(range.fullFrom()), dateParam(range.lastPeriod()));
+            return sums;
+        });
+
+        Map<Long, String> currencies = fxRateService.accountCurrencies(userId);
+        FxRateIndex rates = fxRateService.index();
+        // Minor-unit sums, one mutable slot per month
+        Map<String, long[]> totals = new TreeMap<>();
+        Map<String, Map<String, long[]>> unconverted = new HashMap<>();
+
+        jdbcTemplate.query(sql, rs -> {
+            String date = rs.getString("date");
+            String ym = date.substring(0, 7);
+            String currency = currencies.get(rs.getLong("account_id"));
+            long[] slot = totals.computeIfAbsent(ym, k -> new long[1]);
+            if (!rates.hasRate(currency)) {
+                unconverted.computeIfAbsent(ym, k -> new TreeMap<>()).computeIfAbsent(currency, k -> new long[1])[0] +=
+                    rs.getLong("total");
+                return;
+            }
+            slot[0] += fxRateService.toBase(rates, rs.getLong("total"), currency, LocalDate.parse(date.substring(0, 10)));
+        }, rowParams(userId, from, to, range));
+        FanOut.join(archived).forEach((ym, sum) -> totals.computeIfAbsent(ym, k -> new long[1])[0] += sum[0]);
+
+        List<MonthlyTotal> result = new ArrayList<>(totals.size());
+        totals.forEach((ym, total) -> result.add(new MonthlyTotal(ym, Money.fromMinor(total[0]), amounts(unconverted.get(ym)))));
+        return result;
+    }
+
+    public List<CategoryTotal> totalsByCategory(Long userId, LocalDate from, LocalDate to) {
+        ArchiveRange range = ArchiveRange.of(from, to);
+        String sql = """
+            SELECT c.type, c.name as category, t.date, t.account_id, SUM(-t.amount) as total
+            FROM (
+                SELECT category_id, date, account_id, amount FROM transactions
+                WHERE user_id = ? AND date BETWEEN ? AND ? AND type = 'EXPENSE'
+                UNION ALL
+                SELECT category_id, date, account_id, amount FROM transactions_archive
+                WHERE user_id = ? AND (date BETWEEN ? AND ? OR date BETWEEN ? AND ?) AND type = 'EXPENSE'
+            ) t
+            LEFT JOIN categories c ON t.category_id = c.id
+            GROUP BY c.type, c.name, t.date, t.account_id
+            """;
+
+        // Whole archived months come from their summaries (already in the base currency)
+        CompletableFuture<Map<List<String>, long[]>> archived = fanOut.fork(userId, () -> {
+            Map<List<String>, long[]> sums = new HashMap<>();
+            jdbcTemplate.query("""
+                SELECT c.type, c.name as category, SUM(-s.total_base) as total
+                FROM transaction_summaries s
+                LEFT JOIN categories c ON s.category_id = c.id
+                WHERE s.user_id = ? AND s.period BETWEEN ? AND ?
+                  AND s.type = 'EXPENSE'
                 GROUP BY c.type, c.name
-                ORDER BY total DESC
+                """, rs -> {
+                sums.computeIfAbsent(Arrays.asList(rs.getString("type"), rs.getString("category")), k -> new long[1])[0] +=
+                    rs.getLong("total");
+            }, userId, dateParam(range.fullFrom()), dateParam(range.lastPeriod()));
+            return sums;
+        });
+
+        Map<Long, String> currencies = fxRateService.accountCurrencies(userId);
+        FxRateIndex rates = fxRateService.index();
+        Map<List<String>, long[]> totals = new HashMap<>();
+        Map<List<String>, Map<String, long[]>> unconverted = new HashMap<>();
+
+        jdbcTemplate.query(sql, rs -> {
+            LocalDate date = LocalDate.parse(rs.getString("date").substring(0, 10));
+            List<String> key = Arrays.asList(rs.getString("type"), rs.getString("category"));
+            String currency = currencies.get(rs.getLong("account_id"));
+            long[] slot = totals.computeIfAbsent(key, k -> new long[1]);
+            if (!rates.hasRate(currency)) {
+                unconverted.computeIfAbsent(key, k -> new TreeMap<>()).computeIfAbsent(currency, k -> new long[1])[0] +=
+                    rs.getLong("total");
+                return;
+            }
+            slot[0] += fxRateService.toBase(rates, rs.getLong("total"), currency, date);
+        }, rowParams(userId, from, to, range));
+        FanOut.join(archived).forEach((key, sum) -> totals.computeIfAbsent(key, k -> new long[1])[0] += sum[0]);
+
+        List<Map.Entry<List<String>, long[]>> entries = new ArrayList<>(totals.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]));
+        List<CategoryTotal> result = new ArrayList<>(entries.size());
+        for (Map.Entry<List<String>, long[]> entry : entries) {
+            result.add(new CategoryTotal(entry.getKey().get(0), entry.getKey().get(1), Money.fromMinor(entry.getValue()[0]),
+                amounts(unconverted.get(entry.getKey()))));
+        }
+        return result;
+    }
+
+    public BalanceSeries balanceSeries(Long userId, LocalDate from, LocalDate to, String resolution) {
+        List<LocalDate> points = bucketEnds(from, to, resolution);
+
+        // Balances are accumulated in minor units and only become BigDecimal in the response
+        List<long[]> balanceArrays = new ArrayList<>();
+        List<String[]> accountInfo = new ArrayList<>();
+        List<Long> accountIds = new ArrayList<>();
+        Map<Long, long[]> balancesByAccount = new HashMap<>();
+        Map<Long, Long> openingByAccount = new HashMap<>();
+        jdbcTemplate.query("SELECT id, name, currency, opening_balance FROM accounts WHERE user_id = ? ORDER BY id", rs -> {
+            long id = rs.getLong("id");
+            long opening = rs.getLong("opening_balance");
+            long[] balances = new long[points.size()];
+            Arrays.fill(balances, opening);
+            balancesByAccount.put(id, balances);
+            openingByAccount.put(id, opening);
+            balanceArrays.add(balances);
+            accountIds.add(id);
+            accountInfo.add(new String[] { rs.getString("name"), rs.getString("currency") });
+        }, userId);
+
+        // One ordered scan over (account, day) groups. Postgres returns the running total
+        // from a window function; on SQLite the prefix sum is accumulated while streaming.
+        // Amounts are signed, so TRANSFER_OUT/TRANSFER_IN pairs move balance between accounts.
+        // Archived months before the one holding `from` only move the opening balance, so they
+        // join the scan as one summary row per account; later archived rows join as they are,
+        // since points inside a month need their own days.
+        LocalDate firstRowDay = from.withDayOfMonth(1);
+        boolean sqlite = "sqlite".equals(vendor);
+        String sql = sqlite
+            ? """
+                SELECT account_id, date, SUM(delta) AS delta
+                FROM (
+                    SELECT account_id, date, amount AS delta
+                    FROM transactions
+                    WHERE user_id = ? AND date <= ?
+                    UNION ALL
+                    SELECT account_id, date(period, '+1 month', '-1 day') AS date, total AS delta
+                    FROM transaction_summaries
+                    WHERE user_id = ? AND period < ?
+                    UNION ALL
+                    SELECT account_id, date, amount AS delta
+                    FROM transactions_archive
+                    WHERE user_id = ? AND date BETWEEN ? AND ?
+                )
+                GROUP BY account_id, date
+                ORDER BY account_id, date
+                """
+            : """
+                SELECT account_id, date,
+                       SUM(SUM(delta)) OVER (PARTITION BY account_id ORDER BY date) AS delta
+                FROM (
+                    SELECT account_id, date, amount AS delta
+                    FROM transactions
+                    WHERE user_id = ? AND date <= ?
+                    UNION ALL
+                    SELECT account_id, CAST(period + INTERVAL '1 month' - INTERVAL '1 day' AS DATE) AS date, total AS delta
+                    FROM transaction_summaries
+                    WHERE user_id = ? AND period < ?
+                    UNION ALL
+                    SELECT account_id, date, amount AS delta
+                    FROM transactions_archive
+                    WHERE user_id = ? AND date BETWEEN ? AND ?
+                ) t
+                GROUP BY account_id, date
+                ORDER BY account_id, date
                 """;
+
+        SeriesCursor cursor = new SeriesCursor();
+        jdbcTemplate.query(sql, rs -> {
+            long accountId = rs.getLong("account_id");
+            if (cursor.accountId != accountId) {
+                cursor.flush();
+                cursor.reset(accountId, balancesByAccount.get(accountId), openingByAccount.get(accountId));
+            }
+            if (cursor.balances == null) {
+                return;
+            }
+            LocalDate date = LocalDate.parse(rs.getString("date").substring(0, 10));
+            // Rows are ordered by date: every point before this row sees the balance so far
+            while (cursor.point < points.size() && points.get(cursor.point).isBefore(date)) {
+                cursor.balances[cursor.point++] = cursor.balance;
+            }
+            long delta = rs.getLong("delta");
+            cursor.balance = sqlite ? cursor.balance + delta : cursor.opening + delta;
+        }, userId, dateParam(to), userId, dateParam(firstRowDay), userId, dateParam(firstRowDay), dateParam(to));
+        cursor.flush();
+
+        // Net worth is converted to the base currency at each point's rate; accounts in a
+        // currency without any rate are left out and their currencies listed instead
+        FxRateIndex rates = fxRateService.index();
+        TreeSet<String> unconverted = new TreeSet<>();
+        for (String[] info : accountInfo) {
+            if (!rates.hasRate(info[1])) {
+                unconverted.add(info[1]);
+            }
+        }
+        List<BigDecimal> netWorth = new ArrayList<>(points.size());
+        for (int i = 0; i < points.size(); i++) {
+            long total = 0;
+            for (int a = 0; a < balanceArrays.size(); a++) {
+                if (!unconverted.contains(accountInfo.get(a)[1])) {
+                    total += fxRateService.toBase(rates, balanceArrays.get(a)[i], accountInfo.get(a)[1], points.get(i));
+                }
+            }
+            netWorth.add(Money.fromMinor(total));
+        }
+
+        List<AccountSeries> accounts = new ArrayList<>(accountIds.size());
+        for (int a = 0; a < accountIds.size(); a++) {
+            List<BigDecimal> balances = new ArrayList<>(points.size());
+            for (long balance : balanceArrays.get(a)) {
+                balances.add(Money.fromMinor(balance));
+            }
+            accounts.add(new AccountSeries(accountIds.get(a), accountInfo.get(a)[0], accountInfo.get(a)[1], balances));
+        }
+
+        return new BalanceSeries(points, accounts, netWorth, new ArrayList<>(unconverted));
+    }
+
+    private List<LocalDate> bucketEnds(LocalDate from, LocalDate to, String resolution) {
+        if (to.isBefore(from)) {
+            throw new RuntimeException("'to' must not be before 'from'");
+        }
+        List<LocalDate> points = new ArrayList<>();
+        LocalDate point = switch (resolution) {
+            case "day" -> from;
+            case "week" -> from.with(TemporalAdjusters.nextOrSame(DayOfWeek.SUNDAY));
+            case "month" -> from.with(TemporalAdjusters.lastDayOfMonth());
+            default -> throw new RuntimeException("Unsupported resolution: " + resolution);
+        };
+        while (point.isBefore(to)) {
+            points.add(point);
+            point = switch (resolution) {
+                case "day" -> point.plusDays(1);
+                case "week" -> point.plusWeeks(1);
+                default -> point.plusMonths(1).with(TemporalAdjusters.lastDayOfMonth());
+            };
+        }
+        points.add(to);
+        return points;
+    }
+
+    // Sums per currency that had no FX rate, in that currency
+    private static Map<String, BigDecimal> amounts(Map<String, long[]> sums) {
+        if (sums == null) {
+            return Map.of();
+        }
+        Map<String, BigDecimal> result = new TreeMap<>();
+        sums.forEach((currency, sum) -> result.put(currency, Money.fromMinor(sum[0])));
+        return result;
+    }
+
+    // Hot rows of [from, to], then archived rows of the partial first and last month
+    private Object[] rowParams(Long userId, LocalDate from, LocalDate to, ArchiveRange range) {
+        return new Object[] { userId, dateParam(from), dateParam(to),
+            userId, dateParam(from), dateParam(range.headTo()), dateParam(range.tailFrom()), dateParam(to) };
+    }
+
+    private Object dateParam(LocalDate date) {
+        return "sqlite".equals(vendor) ? date.toString() : date;
+    }
+
+    private static final class SeriesCursor {
+        long accountId = -1;
+        long[] balances;
+        long opening;
+        long balance;
+        int point;
+
+        void reset(long accountId, long[] balances, Long opening) {
+            this.accountId = accountId;
+            this.balances = balances;
+            this.opening = opening != null ? opening : 0;
+            this.balance = this.opening;
+            this.point = 0;
+        }
+
+        // Gap-fill: points after the account's last row keep its final balance
+        void flush() {
+            if (balances != null) {
+                Arrays.fill(balances, point, balances.length, balance);
+            }
+        }
+    }
+
+    // unconverted: amounts per currency without FX rates, not included in total
+    /**
+     * Splits [from, to] for archived data: summaries cover the whole months fullFrom..fullTo,
+     * and the archived rows of [from, headTo] and [tailFrom, to] (a partial first and last
+     * month) are read one by one. An empty part has its start after its end.
+     */
+    private record ArchiveRange(LocalDate fullFrom, LocalDate fullTo, LocalDate headTo, LocalDate tailFrom) {
+
+        static ArchiveRange of(LocalDate from, LocalDate to) {
+            LocalDate fullFrom = from.getDayOfMonth() == 1 ? from : from.plusMonths(1).withDayOfMonth(1);
+            LocalDate fullTo = to.equals(to.with(TemporalAdjusters.lastDayOfMonth())) ? to : to.withDayOfMonth(1).minusDays(1);
+            LocalDate headTo = fullFrom.minusDays(1).isBefore(to) ? fullFrom.minusDays(1) : to;
+            LocalDate tailFrom = fullTo.isAfter(headTo) ? fullTo.plusDays(1) : headTo.plusDays(1);
+            return new ArchiveRange(fullFrom, fullTo, headTo, tailFrom);
+        }
+
+        // Summary periods are first days of months
+        LocalDate lastPeriod() {
+            return fullTo.withDayOfMonth(1);
         }
-        
-        return jdbcTemplate.queryForList(sql, userId, from.toString(), to.toString());
     }
+
+    public record MonthlyTotal(String ym, BigDecimal total,
+                               @JsonInclude(JsonInclude.Include.NON_EMPTY) Map<String, BigDecimal> unconverted) {}
+
+    public record CategoryTotal(String type, String category, BigDecimal total,
+                                @JsonInclude(JsonInclude.Include.NON_EMPTY) Map<String, BigDecimal> unconverted) {}
+
+    public record AccountSeries(Long accountId, String name, String currency, List<BigDecimal> balances) {}
+
+    // unconvertedCurrencies: currencies without FX rates, whose accounts are not in netWorth
+    public record BalanceSeries(List<LocalDate> dates, List<AccountSeries> accounts, List<BigDecimal> netWorth,
+                                @JsonInclude(JsonInclude.Include.NON_EMPTY) List<String> unconvertedCurrencies) {}
 }
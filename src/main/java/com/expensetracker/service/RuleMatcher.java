@@ -0,0 +1,91 @@
+package com.expensetracker.service;
+
+import com.expensetracker.entity.TxType;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * One user's rules compiled for matching. Keywords and the literals every regex requires
+ * share one automaton, so a note is scanned once to find the candidate rules; only those
+ * (and rules with nothing to prefilter on) run their regex and range checks, in rule order.
+ */
+final class RuleMatcher {
+
+    private final Rule[] rules;
+    private final KeywordAutomaton automaton;
+    // Per automaton keyword, the rule it belongs to
+    private final int[] ruleOfLiteral;
+    private final BitSet alwaysCandidates = new BitSet();
+
+    // rules must already be in priority order
+    RuleMatcher(List<Rule> rules) {
+        this.rules = rules.toArray(new Rule[0]);
+        List<String> literals = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        for (int r = 0; r < this.rules.length; r++) {
+            Rule rule = this.rules[r];
+            if (rule.keyword() != null) {
+                literals.add(rule.keyword());
+                owners.add(r);
+            } else if (rule.pattern() != null && rule.literal() != null) {
+                literals.add(rule.literal());
+                owners.add(r);
+            } else {
+                alwaysCandidates.set(r);
+            }
+        }
+        this.automaton = new KeywordAutomaton(literals);
+        this.ruleOfLiteral = owners.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    int size() {
+        return rules.length;
+    }
+
+    // Category of the first rule that matches, or null
+    Long match(Long accountId, TxType type, BigDecimal amount, String note) {
+        BitSet candidates = (BitSet) alwaysCandidates.clone();
+        if (note != null && !note.isEmpty() && ruleOfLiteral.length > 0) {
+            BitSet found = new BitSet(ruleOfLiteral.length);
+            automaton.scan(note, found);
+            for (int k = found.nextSetBit(0); k >= 0; k = found.nextSetBit(k + 1)) {
+                candidates.set(ruleOfLiteral[k]);
+            }
+        }
+        BigDecimal magnitude = amount.abs();
+        for (int r = candidates.nextSetBit(0); r >= 0; r = candidates.nextSetBit(r + 1)) {
+            if (rules[r].matches(accountId, type, magnitude, note)) {
+                return rules[r].categoryId();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param literal  text the pattern requires (see KeywordAutomaton.requiredLiteral), or null
+     * @param income   whether the target category is an income category
+     */
+    record Rule(long id, long categoryId, boolean income, String keyword, Pattern pattern, String literal,
+                BigDecimal minAmount, BigDecimal maxAmount, Long accountId) {
+
+        boolean matches(Long txAccountId, TxType type, BigDecimal magnitude, String note) {
+            if (income != (type == TxType.INCOME)) {
+                return false;
+            }
+            if (accountId != null && !accountId.equals(txAccountId)) {
+                return false;
+            }
+            if (minAmount != null && magnitude.compareTo(minAmount) < 0) {
+                return false;
+            }
+            if (maxAmount != null && magnitude.compareTo(maxAmount) > 0) {
+                return false;
+            }
+            return pattern == null || (note != null && pattern.matcher(note).find());
+        }
+    }
+}
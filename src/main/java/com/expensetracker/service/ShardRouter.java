@@ -0,0 +1,248 @@
+package com.expensetracker.service;
+
+import com.expensetracker.config.ShardRoutingDataSource;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Maps users to SQLite shards and binds the shard to the current thread. Users are
+ * hash-assigned unless the directory (user_shards in shard 0) pins them elsewhere.
+ * Without sharding every user maps to shard 0 and nothing is bound.
+ */
+@Service
+public class ShardRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardRouter.class);
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<Long> ENTERED = new ThreadLocal<>();
+
+    // Tables with a user_id column, parents first
+    private static final List<String> USER_TABLES = List.of(
+        "accounts", "categories", "transactions", "transactions_archive", "transaction_summaries", "expense_sketches",
+        "category_rules", "report_results", "idempotency_keys");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Value("${app.shards.move-timeout-ms:10000}")
+    private long moveTimeoutMs;
+
+    private final Map<Long, Integer> directory = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+    private final Set<Long> moving = ConcurrentHashMap.newKeySet();
+
+    public static Integer currentShard() {
+        return CURRENT.get();
+    }
+
+    @PostConstruct
+    public void loadDirectory() {
+        if (!sharded()) {
+            return;
+        }
+        onShard(0, () -> {
+            jdbcTemplate.query("SELECT user_id, shard FROM user_shards",
+                rs -> { directory.put(rs.getLong("user_id"), rs.getInt("shard")); });
+            if (directory.isEmpty()) {
+                // First sharded start: users of the existing database stay where their data is
+                for (Long userId : jdbcTemplate.queryForList("SELECT id FROM users", Long.class)) {
+                    if (hashShard(userId) != 0) {
+                        jdbcTemplate.update("INSERT INTO user_shards(user_id, shard) VALUES (?, 0)", userId);
+                        directory.put(userId, 0);
+                    }
+                }
+            }
+            return null;
+        });
+        log.info("Sharded storage: {} shards, {} pinned users", shardCount(), directory.size());
+    }
+
+    public boolean sharded() {
+        return dataSource instanceof ShardRoutingDataSource;
+    }
+
+    public int shardCount() {
+        return dataSource instanceof ShardRoutingDataSource routing ? routing.shardCount() : 1;
+    }
+
+    public int shardOf(Long userId) {
+        Integer pinned = directory.get(userId);
+        return pinned != null ? pinned : hashShard(userId);
+    }
+
+    private int hashShard(Long userId) {
+        return (int) Math.floorMod(userId * 0x9E3779B97F4A7C15L >>> 32, (long) shardCount());
+    }
+
+    public <T> T onShard(int shard, Supplier<T> work) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return work.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    public <T> T forUser(Long userId, Supplier<T> work) {
+        return onShard(shardOf(userId), work);
+    }
+
+    // Binds the request thread to the user's shard until exit(); the first user seen wins
+    public void enter(Long userId) {
+        if (!sharded() || ENTERED.get() != null) {
+            return;
+        }
+        AtomicInteger count = inFlight.computeIfAbsent(userId, id -> new AtomicInteger());
+        count.incrementAndGet();
+        if (moving.contains(userId)) {
+            count.decrementAndGet();
+            throw new RetryLaterException(HttpStatus.SERVICE_UNAVAILABLE, "User data is being moved between shards, retry later", 1);
+        }
+        ENTERED.set(userId);
+        CURRENT.set(shardOf(userId));
+    }
+
+    public void exit() {
+        Long userId = ENTERED.get();
+        if (userId == null) {
+            return;
+        }
+        ENTERED.remove();
+        CURRENT.remove();
+        inFlight.get(userId).decrementAndGet();
+    }
+
+    /**
+     * Moves all of a user's rows to another shard in one SQLite transaction (source and
+     * directory attached to the target), after waiting for the user's requests to drain.
+     */
+    public MoveResult moveUser(Long userId, int target) {
+        if (!sharded()) {
+            throw new RuntimeException("Sharding is not enabled");
+        }
+        if (target < 0 || target >= shardCount()) {
+            throw new RuntimeException("Shard must be between 0 and " + (shardCount() - 1));
+        }
+        int source = shardOf(userId);
+        if (source == target) {
+            return new MoveResult(userId, source, target, 0);
+        }
+        if (!moving.add(userId)) {
+            throw new RuntimeException("User is already being moved");
+        }
+        try {
+            awaitDrained(userId);
+            ShardRoutingDataSource routing = (ShardRoutingDataSource) dataSource;
+            int moved = onShard(target, () -> jdbcTemplate.execute((ConnectionCallback<Integer>) con ->
+                copyUser(con, userId, target, routing.shardFile(source), source == 0 ? null : routing.shardFile(0))));
+            directory.put(userId, target);
+            log.info("Moved user {} from shard {} to shard {} ({} transactions)", userId, source, target, moved);
+            return new MoveResult(userId, source, target, moved);
+        } finally {
+            moving.remove(userId);
+        }
+    }
+
+    private void awaitDrained(Long userId) {
+        long deadline = System.currentTimeMillis() + moveTimeoutMs;
+        AtomicInteger count = inFlight.get(userId);
+        while (count != null && count.get() > 0) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new RuntimeException("User still has requests in flight, retry later");
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for requests to finish");
+            }
+        }
+    }
+
+    private int copyUser(Connection con, Long userId, int target, String sourceFile, String directoryFile) throws SQLException {
+        attach(con, sourceFile, "src");
+        // The directory lives in shard 0: the source, the target, or attached separately
+        String dir = directoryFile == null ? "src" : target == 0 ? "main" : "dir";
+        if ("dir".equals(dir)) {
+            attach(con, directoryFile, "dir");
+        }
+        try (Statement st = con.createStatement()) {
+            st.execute("BEGIN IMMEDIATE");
+            try {
+                // Shards created before seed rows were dropped may still hold them with the same ids;
+                // check references at commit
+                st.execute("PRAGMA defer_foreign_keys = ON");
+                update(con, "INSERT OR REPLACE INTO main.users SELECT * FROM src.users WHERE id = ?", userId);
+                int moved = 0;
+                for (String table : USER_TABLES) {
+                    int rows = update(con, "INSERT OR REPLACE INTO main." + table + " SELECT * FROM src." + table + " WHERE user_id = ?", userId);
+                    if ("transactions".equals(table)) {
+                        moved = rows;
+                    }
+                }
+                for (int i = USER_TABLES.size() - 1; i >= 0; i--) {
+                    update(con, "DELETE FROM src." + USER_TABLES.get(i) + " WHERE user_id = ?", userId);
+                }
+                update(con, "DELETE FROM src.users WHERE id = ?", userId);
+                update(con, "INSERT INTO " + dir + ".user_shards(user_id, shard) VALUES (?, " + target
+                    + ") ON CONFLICT (user_id) DO UPDATE SET shard = excluded.shard", userId);
+                st.execute("COMMIT");
+                return moved;
+            } catch (SQLException | RuntimeException e) {
+                st.execute("ROLLBACK");
+                throw e;
+            }
+        } finally {
+            try (Statement st = con.createStatement()) {
+                st.execute("DETACH DATABASE src");
+                if ("dir".equals(dir)) {
+                    st.execute("DETACH DATABASE dir");
+                }
+            }
+        }
+    }
+
+    private static void attach(Connection con, String file, String schema) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement("ATTACH DATABASE ? AS " + schema)) {
+            ps.setString(1, file);
+            ps.execute();
+        }
+    }
+
+    private static int update(Connection con, String sql, Long userId) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setLong(1, userId);
+            return ps.executeUpdate();
+        }
+    }
+
+    public record MoveResult(Long userId, int fromShard, int toShard, int transactions) {}
+}
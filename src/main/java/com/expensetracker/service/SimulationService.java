@@ -0,0 +1,149 @@
+package com.expensetracker.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
+/**
+ * Monte Carlo cash-flow simulation on the fork-join pool. Paths are split into
+ * ranges, each task with its own SplittableRandom; all state lives in primitive
+ * arrays. Paths not finished by the deadline are left out of the result.
+ */
+@Service
+public class SimulationService {
+
+    @Value("${app.simulation.paths:50000}")
+    private int paths;
+
+    @Value("${app.simulation.deadline-ms:2000}")
+    private long deadlineMs;
+
+    // Percentile bands are taken from every stride-th path, keeping the band matrix
+    // (paths x checkpoints floats) within this many cells
+    @Value("${app.simulation.max-band-cells:1000000}")
+    private int maxBandCells;
+
+    /**
+     * @param start     surplus at the start of day 0
+     * @param dayOfWeek per simulated day, index into outflowPools
+     * @param payday    per simulated day: 0 none, 1 payday of the current month, 2 later payday
+     * @param outflowPools historical daily outflows per weekday, sampled with replacement
+     * @param incomes   historical monthly incomes, sampled on paydays
+     * @param receivedThisMonth income already received this month
+     * @param checkpoints ascending day indices at which percentile bands are reported
+     */
+    public Result run(double start, int[] dayOfWeek, byte[] payday, double[][] outflowPools,
+                      double[] incomes, double receivedThisMonth, int[] checkpoints, double price) {
+        double[] finals = new double[paths];
+        Arrays.fill(finals, Double.NaN);
+        int stride = (int) Math.max(1, ((long) paths * checkpoints.length + maxBandCells - 1) / maxBandCells);
+        float[][] bands = new float[checkpoints.length][(paths + stride - 1) / stride];
+        long deadline = System.nanoTime() + deadlineMs * 1_000_000L;
+        int threshold = Math.max(256, paths / (ForkJoinPool.getCommonPoolParallelism() * 4));
+
+        Kernel kernel = new Kernel(start, dayOfWeek, payday, outflowPools, incomes, receivedThisMonth,
+            checkpoints, finals, bands, stride, deadline);
+        ForkJoinPool.commonPool().invoke(new PathTask(kernel, 0, paths, threshold, new SplittableRandom()));
+
+        int completed = 0;
+        int affordable = 0;
+        for (double value : finals) {
+            if (!Double.isNaN(value)) {
+                completed++;
+                if (value >= price) {
+                    affordable++;
+                }
+            }
+        }
+
+        double[][] percentiles = new double[checkpoints.length][];
+        IntStream.range(0, checkpoints.length).parallel().forEach(c -> {
+            float[] values = new float[bands[c].length];
+            int n = 0;
+            for (int p = 0; p < finals.length; p += stride) {
+                if (!Double.isNaN(finals[p])) {
+                    values[n++] = bands[c][p / stride];
+                }
+            }
+            values = Arrays.copyOf(values, n);
+            Arrays.sort(values);
+            percentiles[c] = new double[] { at(values, 0.1), at(values, 0.5), at(values, 0.9) };
+        });
+
+        double probability = completed == 0 ? 0 : (double) affordable / completed;
+        return new Result(paths, completed, probability, percentiles);
+    }
+
+    private static double at(float[] sorted, double q) {
+        return sorted.length == 0 ? Double.NaN : sorted[(int) (q * (sorted.length - 1))];
+    }
+
+    private record Kernel(double start, int[] dayOfWeek, byte[] payday, double[][] outflowPools,
+                          double[] incomes, double receivedThisMonth, int[] checkpoints,
+                          double[] finals, float[][] bands, int stride, long deadline) {
+
+        void simulate(int from, int to, SplittableRandom random) {
+            int days = dayOfWeek.length;
+            for (int p = from; p < to; p++) {
+                if ((p & 63) == 0 && System.nanoTime() > deadline) {
+                    return;
+                }
+                double surplus = start;
+                boolean sampled = p % stride == 0;
+                int c = 0;
+                for (int d = 0; d < days; d++) {
+                    double[] pool = outflowPools[dayOfWeek[d]];
+                    surplus -= pool[random.nextInt(pool.length)];
+                    if (payday[d] != 0 && incomes.length > 0) {
+                        double income = incomes[random.nextInt(incomes.length)];
+                        surplus += payday[d] == 1 ? Math.max(0, income - receivedThisMonth) : income;
+                    }
+                    if (c < checkpoints.length && checkpoints[c] == d) {
+                        if (sampled) {
+                            bands[c][p / stride] = (float) surplus;
+                        }
+                        c++;
+                    }
+                }
+                finals[p] = surplus;
+            }
+        }
+    }
+
+    private static final class PathTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Kernel kernel;
+        private final int from;
+        private final int to;
+        private final int threshold;
+        private final SplittableRandom random;
+
+        PathTask(Kernel kernel, int from, int to, int threshold, SplittableRandom random) {
+            this.kernel = kernel;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.random = random;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                kernel.simulate(from, to, random);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            // split() is called on the owning thread, so every task gets an independent stream
+            invokeAll(new PathTask(kernel, from, mid, threshold, random.split()),
+                      new PathTask(kernel, mid, to, threshold, random));
+        }
+    }
+
+    public record Result(int paths, int completed, double probability, double[][] percentiles) {}
+}
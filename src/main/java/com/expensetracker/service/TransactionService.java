@@ -9,6 +9,8 @@ import com.expensetracker.repo.CategoryRepository;
 import com.expensetracker.repo.TransactionRepository;
 import com.expensetracker.repo.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -32,15 +34,42 @@ public class TransactionService {
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Autowired
+    private AnomalyService anomalyService;
+
+    @Autowired
+    private ForecastService forecastService;
+
+    @Autowired
+    private CategorizationService categorizationService;
+
+    @Autowired
+    private AccountLocks accountLocks;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    // Reject expenses and transfers that would take an account below zero
+    @Value("${app.transactions.require-sufficient-funds:false}")
+    private boolean requireSufficientFunds;
+
     @Transactional
     public Transaction createExpense(ExpenseCreateDTO dto) {
+        accountLocks.lock(dto.accountId());
         User user = userRepository.findById(dto.userId())
             .orElseThrow(() -> new RuntimeException("User not found"));
         
         Account account = accountRepository.findById(dto.accountId())
             .orElseThrow(() -> new RuntimeException("Account not found"));
+        requireFunds(account, dto.amount());
         
-        Category category = categoryRepository.findById(dto.categoryId())
+        // Without an explicit category the user's rules pick one
+        Long categoryId = dto.categoryId() != null ? dto.categoryId()
+            : categorizationService.categorize(user.getId(), account.getId(), TxType.EXPENSE, dto.amount(), dto.note());
+        if (categoryId == null) {
+            throw new RuntimeException("Category is required: no categorization rule matched");
+        }
+        Category category = categoryRepository.findById(categoryId)
             .orElseThrow(() -> new RuntimeException("Category not found"));
 
         Transaction transaction = new Transaction();
@@ -53,7 +82,14 @@ public class TransactionService {
         transaction.setNote(dto.note());
         transaction.setCreatedAt(LocalDateTime.now());
 
-        return transactionRepository.save(transaction);
+        // Checked against history before this expense is part of it
+        boolean unusual = anomalyService.observe(user.getId(), category.getId(), dto.amount(), account.getCurrency(),
+            transaction.getDate());
+
+        Transaction saved = transactionRepository.save(transaction);
+        forecastService.record(user.getId(), saved.getType(), saved.getDate(), saved.getAmount(), account.getCurrency());
+        saved.setUnusual(unusual);
+        return saved;
     }
 
     @Transactional
@@ -67,18 +103,24 @@ public class TransactionService {
         Transaction transaction = new Transaction();
         transaction.setUser(user);
         transaction.setAccount(account);
-        transaction.setCategory(null); // Income can be without specific category
+        // Income can be without specific category unless a rule assigns one
+        Long categoryId = categorizationService.categorize(user.getId(), account.getId(), TxType.INCOME, dto.amount(), dto.note());
+        transaction.setCategory(categoryId != null ? categoryRepository.findById(categoryId).orElse(null) : null);
         transaction.setType(TxType.INCOME);
         transaction.setDate(LocalDate.parse(dto.date()));
         transaction.setAmount(dto.amount()); // Positive for income
         transaction.setNote(dto.note());
         transaction.setCreatedAt(LocalDateTime.now());
 
-        return transactionRepository.save(transaction);
+        Transaction saved = transactionRepository.save(transaction);
+        forecastService.record(user.getId(), saved.getType(), saved.getDate(), saved.getAmount(), account.getCurrency());
+        return saved;
     }
 
     @Transactional
     public TransferResult createTransfer(TransferCreateDTO dto) {
+        // Both accounts, in id order, so opposite transfers between the same pair cannot deadlock
+        accountLocks.lock(dto.fromAccountId(), dto.toAccountId());
         User user = userRepository.findById(dto.userId())
             .orElseThrow(() -> new RuntimeException("User not found"));
         
@@ -87,6 +129,7 @@ public class TransactionService {
         
         Account toAccount = accountRepository.findById(dto.toAccountId())
             .orElseThrow(() -> new RuntimeException("To account not found"));
+        requireFunds(fromAccount, dto.amount().add(dto.fee()));
 
         String transferGroup = UUID.randomUUID().toString();
 
@@ -117,6 +160,8 @@ public class TransactionService {
         // Save both transactions
         Transaction savedOut = transactionRepository.save(transferOut);
         Transaction savedIn = transactionRepository.save(transferIn);
+        forecastService.record(user.getId(), savedOut.getType(), savedOut.getDate(), savedOut.getAmount(), fromAccount.getCurrency());
+        forecastService.record(user.getId(), savedIn.getType(), savedIn.getDate(), savedIn.getAmount(), toAccount.getCurrency());
 
         // If there's a fee, create an additional expense transaction
         if (dto.fee().compareTo(BigDecimal.ZERO) > 0) {
@@ -132,10 +177,38 @@ public class TransactionService {
             feeTransaction.setCreatedAt(LocalDateTime.now());
             
             transactionRepository.save(feeTransaction);
+            forecastService.record(user.getId(), feeTransaction.getType(), feeTransaction.getDate(), feeTransaction.getAmount(), fromAccount.getCurrency());
         }
 
         return new TransferResult(savedOut, savedIn);
     }
 
+    @Transactional
+    public void deleteTransaction(Long id, Long userId) {
+        transactionRepository.findById(id)
+            .filter(transaction -> transaction.getUser().getId().equals(userId))
+            .ifPresent(transaction -> {
+                transactionRepository.delete(transaction);
+                forecastService.invalidate(userId);
+            });
+    }
+
+    // Only meaningful under the account's lock, which keeps concurrent debits from both passing
+    private void requireFunds(Account account, BigDecimal debit) {
+        if (!requireSufficientFunds) {
+            return;
+        }
+        Long balance = jdbcTemplate.queryForObject("""
+            SELECT a.opening_balance
+                 + COALESCE((SELECT SUM(t.amount) FROM transactions t WHERE t.account_id = a.id), 0)
+                 + COALESCE((SELECT SUM(s.total) FROM transaction_summaries s WHERE s.account_id = a.id), 0)
+            FROM accounts a
+            WHERE a.id = ?
+            """, Long.class, account.getId());
+        if (balance != null && balance < Money.toMinor(debit)) {
+            throw new RuntimeException("Insufficient funds in account " + account.getName());
+        }
+    }
+
     public record TransferResult(Transaction transferOut, Transaction transferIn) {}
 }
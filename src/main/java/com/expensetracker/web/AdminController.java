@@ -0,0 +1,58 @@
+package com.expensetracker.web;
+
+import com.expensetracker.service.ArchiveService;
+import com.expensetracker.service.BackupService;
+import com.expensetracker.service.ShardRouter;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/admin")
+@Tag(name = "Admin", description = "Maintenance endpoints")
+public class AdminController {
+
+    @Autowired
+    private ArchiveService archiveService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private BackupService backupService;
+
+    @PostMapping("/archive")
+    @Operation(summary = "Archive old transactions", description = "Move transactions before the cutoff month into the archive and summaries")
+    public ArchiveService.ArchiveResult archive(@RequestParam(required = false) String before) {
+        LocalDate cutoff = before != null ? LocalDate.parse(before) : archiveService.defaultCutoff();
+        return archiveService.archive(cutoff);
+    }
+
+    @PostMapping("/shards/move")
+    @Operation(summary = "Move user to shard", description = "Move all of a user's data to another SQLite shard")
+    public ShardRouter.MoveResult moveUser(@RequestParam Long userId, @RequestParam int shard) {
+        return shardRouter.moveUser(userId, shard);
+    }
+
+    @PostMapping("/backups")
+    @Operation(summary = "Create backup", description = "Write an online snapshot of the SQLite database without blocking writers for long")
+    public BackupService.Snapshot backup() {
+        return backupService.backup();
+    }
+
+    @GetMapping("/backups")
+    @Operation(summary = "List backups", description = "Snapshots kept under the backup directory, newest first")
+    public List<BackupService.Snapshot> listBackups() {
+        return backupService.list();
+    }
+
+    @PostMapping("/backups/{name}/restore")
+    @Operation(summary = "Restore backup", description = "Replace the live database with a snapshot of the same schema version")
+    public BackupService.Snapshot restore(@PathVariable String name) {
+        return backupService.restore(name);
+    }
+}
@@ -0,0 +1,176 @@
+package com.expensetracker.web;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Admission control in front of the API. DB-heavy analytics endpoints are rate limited per
+ * user and share a concurrency limit with writes; requests that cannot get in before their
+ * queue timeout are shed with 429 (rate) or 503 (overload) and a Retry-After header.
+ */
+@Component
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    @Value("${app.admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.admission.heavy-paths:/api/reports/**,/api/advisor/**,/api/expenses/export,/api/expenses/bulk/**,/api/rules/apply,/api/import}")
+    private List<String> heavyPaths;
+
+    @Value("${app.admission.user-rate:5}")
+    private double userRate;
+
+    @Value("${app.admission.user-burst:20}")
+    private int userBurst;
+
+    @Value("${app.admission.stripes:1024}")
+    private int stripes;
+
+    // Should not exceed the connection pool size
+    @Value("${app.admission.max-concurrent:10}")
+    private int maxConcurrent;
+
+    @Value("${app.admission.write-reserve:3}")
+    private int writeReserve;
+
+    @Value("${app.admission.queue-timeout-ms:2000}")
+    private long queueTimeoutMs;
+
+    @Value("${app.admission.write-queue-timeout-ms:5000}")
+    private long writeQueueTimeoutMs;
+
+    @Value("${app.admission.retry-after-seconds:2}")
+    private long retryAfterSeconds;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private TokenBuckets buckets;
+    private ConcurrencyLimiter limiter;
+
+    @PostConstruct
+    public void init() {
+        buckets = new TokenBuckets(stripes, userRate, userBurst);
+        limiter = new ConcurrencyLimiter(maxConcurrent, writeReserve);
+
+        Gauge.builder("admission.in_flight", limiter, ConcurrencyLimiter::inUse).register(meterRegistry);
+        for (boolean write : new boolean[] { true, false }) {
+            String kind = kind(write);
+            Gauge.builder("admission.waiting", limiter, l -> l.waiting(write)).tag("class", kind).register(meterRegistry);
+            FunctionCounter.builder("admission.queued", limiter, l -> l.queued(write)).tag("class", kind).register(meterRegistry);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !path(request).startsWith("/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String path = path(request);
+        boolean heavy = heavyPaths.stream().anyMatch(pattern -> pathMatcher.match(pattern, path));
+        boolean write = !heavy && !"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod())
+            && !"OPTIONS".equals(request.getMethod());
+        if (!heavy && !write) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        if (heavy) {
+            long waitMs = buckets.tryAcquire(userKey(request));
+            if (waitMs > 0) {
+                shed(response, HttpStatus.TOO_MANY_REQUESTS, "rate_limited", write, (waitMs + 999) / 1000,
+                    "Rate limit exceeded, retry later");
+                return;
+            }
+        }
+
+        boolean acquired;
+        try {
+            acquired = limiter.acquire(write, write ? writeQueueTimeoutMs : queueTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            shed(response, HttpStatus.SERVICE_UNAVAILABLE, "overloaded", write, retryAfterSeconds,
+                "Server busy, retry later");
+            return;
+        }
+
+        boolean async = false;
+        try {
+            chain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                // Streaming exports keep their permit until the response completes
+                request.getAsyncContext().addListener(new ReleasingListener());
+                async = true;
+            }
+        } finally {
+            if (!async) {
+                limiter.release();
+            }
+        }
+    }
+
+    private void shed(HttpServletResponse response, HttpStatus status, String reason, boolean write,
+                      long retryAfter, String message) throws IOException {
+        meterRegistry.counter("admission.shed", "reason", reason, "class", kind(write)).increment();
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, retryAfter)));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write("{\"error\":\"" + status.getReasonPhrase() + "\",\"message\":\"" + message + "\"}");
+    }
+
+    // Advisor requests carry the user in the body, so those fall back to the client address
+    private static String userKey(HttpServletRequest request) {
+        String userId = request.getParameter("userId");
+        return userId != null ? "user:" + userId : "addr:" + request.getRemoteAddr();
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private static String kind(boolean write) {
+        return write ? "write" : "analytics";
+    }
+
+    private final class ReleasingListener implements AsyncListener {
+        @Override
+        public void onComplete(AsyncEvent event) {
+            limiter.release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {}
+
+        @Override
+        public void onError(AsyncEvent event) {}
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {}
+    }
+}
@@ -2,6 +2,7 @@ package com.expensetracker.web;
 
 import com.expensetracker.dto.AdvisorRequestDTO;
 import com.expensetracker.dto.AdvisorResponseDTO;
+import com.expensetracker.dto.SimulationResponseDTO;
 import com.expensetracker.service.AdvisorService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -22,4 +23,10 @@ public class AdvisorController {
     public AdvisorResponseDTO canBuy(@Valid @RequestBody AdvisorRequestDTO request) {
         return advisorService.compute(request);
     }
+
+    @PostMapping("/simulate")
+    @Operation(summary = "Simulate purchase", description = "Monte Carlo probability that a purchase is affordable by the target date")
+    public SimulationResponseDTO simulate(@Valid @RequestBody AdvisorRequestDTO request) {
+        return advisorService.simulate(request);
+    }
 }
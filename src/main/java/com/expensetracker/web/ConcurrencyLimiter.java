@@ -0,0 +1,107 @@
+package com.expensetracker.web;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit shared by writes and analytics. Analytics only get the permits outside
+ * the write reserve and never overtake a waiting write, so writes keep flowing when the
+ * database is saturated by reports.
+ */
+final class ConcurrencyLimiter {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final int capacity;
+    private final int writeReserve;
+
+    private int inUse;
+    private int writesWaiting;
+    private int analyticsWaiting;
+    private long writesQueued;
+    private long analyticsQueued;
+
+    ConcurrencyLimiter(int capacity, int writeReserve) {
+        if (writeReserve >= capacity) {
+            throw new IllegalArgumentException("Write reserve must be below the concurrency limit");
+        }
+        this.capacity = capacity;
+        this.writeReserve = writeReserve;
+    }
+
+    boolean acquire(boolean write, long timeoutMs) throws InterruptedException {
+        long nanos = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        lock.lock();
+        try {
+            if (!available(write)) {
+                if (write) {
+                    writesWaiting++;
+                    writesQueued++;
+                } else {
+                    analyticsWaiting++;
+                    analyticsQueued++;
+                }
+                try {
+                    while (!available(write)) {
+                        if (nanos <= 0) {
+                            return false;
+                        }
+                        nanos = released.awaitNanos(nanos);
+                    }
+                } finally {
+                    if (write) {
+                        writesWaiting--;
+                    } else {
+                        analyticsWaiting--;
+                    }
+                }
+            }
+            inUse++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release() {
+        lock.lock();
+        try {
+            inUse--;
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean available(boolean write) {
+        return write ? inUse < capacity : inUse < capacity - writeReserve && writesWaiting == 0;
+    }
+
+    int inUse() {
+        lock.lock();
+        try {
+            return inUse;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    int waiting(boolean write) {
+        lock.lock();
+        try {
+            return write ? writesWaiting : analyticsWaiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long queued(boolean write) {
+        lock.lock();
+        try {
+            return write ? writesQueued : analyticsQueued;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
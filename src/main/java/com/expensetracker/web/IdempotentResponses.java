@@ -0,0 +1,23 @@
+package com.expensetracker.web;
+
+import com.expensetracker.service.IdempotencyService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+// Responses for creates that accept an Idempotency-Key header
+final class IdempotentResponses {
+
+    static final String HEADER = "Idempotency-Key";
+
+    private IdempotentResponses() {}
+
+    // A replay is written by the converter negotiated for this request, like the first response
+    static ResponseEntity<Object> of(IdempotencyService.Outcome outcome, HttpStatus status) {
+        if (!outcome.replayed()) {
+            return ResponseEntity.status(status).body(outcome.value());
+        }
+        return ResponseEntity.status(outcome.replayStatus())
+            .header("Idempotent-Replayed", "true")
+            .body(outcome.value());
+    }
+}
@@ -0,0 +1,47 @@
+package com.expensetracker.web;
+
+import com.expensetracker.service.ImportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+
+@RestController
+@RequestMapping("/api/import")
+@Tag(name = "Import", description = "Bank statement import")
+public class ImportController {
+
+    @Autowired
+    private ImportService importService;
+
+    // The body is the raw CSV file (curl --data-binary @statement.csv -H 'Content-Type: text/csv')
+    @PostMapping(consumes = { "text/csv", "text/plain", "application/octet-stream" })
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    @Operation(summary = "Import CSV statement", description = "Queue a bank statement CSV for import into an account; poll the returned id for progress")
+    public ImportService.ImportStatus importCsv(
+            @RequestParam(defaultValue = "1") Long userId,
+            @RequestParam Long accountId,
+            @RequestParam(defaultValue = "date") String dateColumn,
+            @RequestParam(defaultValue = "amount") String amountColumn,
+            @RequestParam(defaultValue = "description") String noteColumn,
+            @RequestParam(defaultValue = "yyyy-MM-dd") String dateFormat,
+            @RequestParam(defaultValue = ",") char delimiter,
+            @RequestParam(defaultValue = "false") boolean decimalComma,
+            HttpServletRequest request) throws IOException {
+        ImportService.Mapping mapping = new ImportService.Mapping(dateColumn, amountColumn,
+            noteColumn.isBlank() ? null : noteColumn, dateFormat, delimiter, decimalComma);
+        return importService.submit(userId, accountId, mapping, request.getInputStream());
+    }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "Import status", description = "Progress, counts and rejected rows of an import")
+    public ResponseEntity<ImportService.ImportStatus> status(@PathVariable String id, @RequestParam(defaultValue = "1") Long userId) {
+        ImportService.ImportStatus status = importService.status(id, userId);
+        return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+    }
+}
@@ -2,12 +2,14 @@ package com.expensetracker.web;
 
 import com.expensetracker.dto.IncomeCreateDTO;
 import com.expensetracker.entity.Transaction;
+import com.expensetracker.service.IdempotencyService;
 import com.expensetracker.service.TransactionService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -18,10 +20,19 @@ public class IncomeController {
     @Autowired
     private TransactionService transactionService;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
     @PostMapping
-    @ResponseStatus(HttpStatus.CREATED)
-    @Operation(summary = "Create income", description = "Create a new income transaction")
-    public Transaction createIncome(@Valid @RequestBody IncomeCreateDTO dto) {
-        return transactionService.createIncome(dto);
+    @Operation(summary = "Create income", description = "Create a new income transaction. Retries with the same Idempotency-Key replay the first response")
+    public ResponseEntity<?> createIncome(
+            @Valid @RequestBody IncomeCreateDTO dto,
+            @RequestHeader(value = IdempotentResponses.HEADER, required = false) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return ResponseEntity.status(HttpStatus.CREATED).body(transactionService.createIncome(dto));
+        }
+        IdempotencyService.Outcome outcome = idempotencyService.execute(dto.userId(), idempotencyKey, "/api/income", dto,
+            HttpStatus.CREATED, Transaction.class, () -> transactionService.createIncome(dto));
+        return IdempotentResponses.of(outcome, HttpStatus.CREATED);
     }
 }
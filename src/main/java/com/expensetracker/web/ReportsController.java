@@ -1,14 +1,17 @@
 package com.expensetracker.web;
 
+import com.expensetracker.service.ReportJobService;
 import com.expensetracker.service.ReportService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDate;
 import java.util.List;
-import java.util.Map;
 
 @RestController
 @RequestMapping("/api/reports")
@@ -18,9 +21,12 @@ public class ReportsController {
     @Autowired
     private ReportService reportService;
 
+    @Autowired
+    private ReportJobService reportJobService;
+
     @GetMapping("/monthly")
     @Operation(summary = "Get monthly totals", description = "Retrieve monthly financial totals")
-    public List<Map<String, Object>> getMonthlyTotals(
+    public List<ReportService.MonthlyTotal> getMonthlyTotals(
             @RequestParam(defaultValue = "1") Long userId,
             @RequestParam String from,
             @RequestParam String to) {
@@ -33,7 +39,7 @@ public class ReportsController {
 
     @GetMapping("/by-category")
     @Operation(summary = "Get totals by category", description = "Retrieve financial totals grouped by category")
-    public List<Map<String, Object>> getTotalsByCategory(
+    public List<ReportService.CategoryTotal> getTotalsByCategory(
             @RequestParam(defaultValue = "1") Long userId,
             @RequestParam String from,
             @RequestParam String to) {
@@ -43,4 +49,56 @@ public class ReportsController {
         
         return reportService.totalsByCategory(userId, fromDate, toDate);
     }
+
+    @GetMapping("/balance-series")
+    @Operation(summary = "Get balance series", description = "Retrieve daily per-account balances and net worth, downsampled to day, week or month")
+    public ReportService.BalanceSeries getBalanceSeries(
+            @RequestParam(defaultValue = "1") Long userId,
+            @RequestParam String from,
+            @RequestParam String to,
+            @RequestParam(defaultValue = "day") String resolution) {
+        
+        LocalDate fromDate = LocalDate.parse(from);
+        LocalDate toDate = LocalDate.parse(to);
+        
+        return reportService.balanceSeries(userId, fromDate, toDate, resolution);
+    }
+
+    @PostMapping("/jobs")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    @Operation(summary = "Submit report job", description = "Run a report (monthly, by-category, balance-series) in the background; identical in-flight jobs are shared")
+    public ReportJobService.JobStatus submitJob(
+            @RequestParam(defaultValue = "1") Long userId,
+            @RequestParam String report,
+            @RequestParam String from,
+            @RequestParam String to,
+            @RequestParam(defaultValue = "day") String resolution) {
+
+        return reportJobService.submit(userId, report, LocalDate.parse(from), LocalDate.parse(to), resolution);
+    }
+
+    @GetMapping("/jobs/{id}")
+    @Operation(summary = "Get report job status", description = "QUEUED, RUNNING, COMPLETED, FAILED or CANCELLED")
+    public ResponseEntity<ReportJobService.JobStatus> getJob(@PathVariable String id, @RequestParam(defaultValue = "1") Long userId) {
+        ReportJobService.JobStatus status = reportJobService.status(id, userId);
+        return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+    }
+
+    @GetMapping("/jobs/{id}/result")
+    @Operation(summary = "Get report job result", description = "The report as returned by the matching synchronous endpoint, once the job has completed")
+    public ResponseEntity<byte[]> getJobResult(@PathVariable String id, @RequestParam(defaultValue = "1") Long userId) {
+        byte[] result = reportJobService.result(id, userId);
+        if (result != null) {
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(result);
+        }
+        // Known but not completed (yet) is a conflict; unknown or expired is not found
+        return ResponseEntity.status(reportJobService.status(id, userId) != null ? HttpStatus.CONFLICT : HttpStatus.NOT_FOUND).build();
+    }
+
+    @DeleteMapping("/jobs/{id}")
+    @Operation(summary = "Cancel report job", description = "Cancel a queued or running report job")
+    public ResponseEntity<ReportJobService.JobStatus> cancelJob(@PathVariable String id, @RequestParam(defaultValue = "1") Long userId) {
+        ReportJobService.JobStatus status = reportJobService.cancel(id, userId);
+        return status != null ? ResponseEntity.ok(status) : ResponseEntity.notFound().build();
+    }
 }
@@ -0,0 +1,50 @@
+package com.expensetracker.web;
+
+import com.expensetracker.dto.RuleCreateDTO;
+import com.expensetracker.service.CategorizationService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/rules")
+@Tag(name = "Rules", description = "Auto-categorization rules")
+public class RulesController {
+
+    @Autowired
+    private CategorizationService categorizationService;
+
+    @GetMapping
+    @Operation(summary = "List rules", description = "Rules of a user in the order they are tried")
+    public List<Map<String, Object>> getRules(@RequestParam(defaultValue = "1") Long userId) {
+        return categorizationService.listRules(userId);
+    }
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    @Operation(summary = "Create rule", description = "Add a rule; the lowest priority matching rule decides the category")
+    public Map<String, Object> createRule(@Valid @RequestBody RuleCreateDTO dto) {
+        return Map.of("id", categorizationService.createRule(dto));
+    }
+
+    @DeleteMapping("/{id}")
+    @Operation(summary = "Delete rule", description = "Delete a rule")
+    public ResponseEntity<Void> deleteRule(@PathVariable Long id, @RequestParam(defaultValue = "1") Long userId) {
+        return categorizationService.deleteRule(id, userId)
+            ? ResponseEntity.noContent().build()
+            : ResponseEntity.notFound().build();
+    }
+
+    @PostMapping("/apply")
+    @Operation(summary = "Apply rules", description = "Categorize the user's uncategorized expenses and incomes")
+    public CategorizationService.ApplyResult apply(@RequestParam(defaultValue = "1") Long userId) {
+        return categorizationService.applyToUncategorized(userId);
+    }
+}
@@ -0,0 +1,60 @@
+package com.expensetracker.web;
+
+import com.expensetracker.service.ShardRouter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ValueConstants;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * Binds requests with a userId request parameter (or its declared default) to the user's
+ * shard. Requests carrying the user in the body are bound by {@link UserScopedBodyAdvice}.
+ */
+@Component
+public class ShardRoutingInterceptor implements AsyncHandlerInterceptor {
+
+    private static final ParameterNameDiscoverer PARAMETER_NAMES = new DefaultParameterNameDiscoverer();
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!shardRouter.sharded() || !(handler instanceof HandlerMethod method)) {
+            return true;
+        }
+        for (MethodParameter parameter : method.getMethodParameters()) {
+            RequestParam param = parameter.getParameterAnnotation(RequestParam.class);
+            // Names are only discovered once the handler has run, which is after the first request
+            parameter.initParameterNameDiscovery(PARAMETER_NAMES);
+            if (param != null && "userId".equals(param.name().isEmpty() ? parameter.getParameterName() : param.name())) {
+                String value = request.getParameter("userId");
+                if (value == null && !ValueConstants.DEFAULT_NONE.equals(param.defaultValue())) {
+                    value = param.defaultValue();
+                }
+                if (value != null) {
+                    shardRouter.enter(Long.valueOf(value));
+                }
+                break;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        shardRouter.exit();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        shardRouter.exit();
+    }
+}
@@ -0,0 +1,32 @@
+package com.expensetracker.web;
+
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the status and headers (Retry-After) of a ResponseStatusException, in the same body
+ * shape as ApiExceptionHandler. Ordered first, so neither its RuntimeException handler nor
+ * the problem-details handler turns these into something else.
+ */
+@RestControllerAdvice
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class StatusExceptionHandler {
+
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<Map<String, Object>> handleResponseStatus(ResponseStatusException ex) {
+        HttpStatus status = HttpStatus.valueOf(ex.getStatusCode().value());
+        Map<String, Object> response = new HashMap<>();
+        response.put("error", status.getReasonPhrase());
+        response.put("message", ex.getReason());
+
+        return ResponseEntity.status(status).headers(ex.getHeaders()).body(response);
+    }
+}
@@ -0,0 +1,59 @@
+package com.expensetracker.web;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Token buckets over a fixed number of stripes; keys hashing to the same stripe share a
+ * bucket. Each stripe packs the last refill time (ms) and remaining milli-tokens into one
+ * long and is updated with compare-and-set, so there are no locks and no per-key garbage.
+ */
+final class TokenBuckets {
+
+    private static final int TOKEN_BITS = 22;
+    private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+    private static final long ONE = 1000;
+
+    private final AtomicLongArray stripes;
+    private final long capacity;
+    // Milli-tokens per millisecond, i.e. tokens per second
+    private final double refillPerMs;
+    private final long origin = System.nanoTime();
+
+    TokenBuckets(int stripeCount, double tokensPerSecond, int burst) {
+        if (Integer.bitCount(stripeCount) != 1) {
+            throw new IllegalArgumentException("Stripe count must be a power of two");
+        }
+        this.capacity = burst * ONE;
+        if (capacity > TOKEN_MASK) {
+            throw new IllegalArgumentException("Burst too large: " + burst);
+        }
+        this.refillPerMs = tokensPerSecond;
+        this.stripes = new AtomicLongArray(stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            stripes.set(i, capacity);
+        }
+    }
+
+    // Takes one token; returns 0 on success, otherwise the milliseconds until one is available
+    long tryAcquire(Object key) {
+        int h = key.hashCode();
+        int index = (h ^ (h >>> 16)) & (stripes.length() - 1);
+        while (true) {
+            long state = stripes.get(index);
+            long now = now();
+            long elapsed = now - (state >>> TOKEN_BITS);
+            long tokens = Math.min(capacity, (state & TOKEN_MASK) + (long) (elapsed * refillPerMs));
+            if (tokens < ONE) {
+                return Math.max(1, (long) Math.ceil((ONE - tokens) / refillPerMs));
+            }
+            if (stripes.compareAndSet(index, state, (now << TOKEN_BITS) | (tokens - ONE))) {
+                return 0;
+            }
+        }
+    }
+
+    private long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - origin);
+    }
+}
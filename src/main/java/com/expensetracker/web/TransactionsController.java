@@ -1,16 +1,27 @@
 package com.expensetracker.web;
 
+import com.expensetracker.dto.BulkOperationDTO;
 import com.expensetracker.dto.ExpenseCreateDTO;
 import com.expensetracker.entity.Transaction;
 import com.expensetracker.repo.TransactionRepository;
+import com.expensetracker.service.BulkService;
+import com.expensetracker.service.ExportService;
+import com.expensetracker.service.IdempotencyService;
 import com.expensetracker.service.TransactionService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.util.List;
 
@@ -25,6 +36,15 @@ public class TransactionsController {
     @Autowired
     private TransactionService transactionService;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private ExportService exportService;
+
+    @Autowired
+    private BulkService bulkService;
+
     @GetMapping
     @Operation(summary = "Get expenses", description = "Retrieve expenses with optional filtering")
     public List<Transaction> getExpenses(
@@ -43,16 +63,71 @@ public class TransactionsController {
         }
     }
 
+    @GetMapping("/export")
+    @Operation(summary = "Export transactions", description = "Stream transactions as CSV (or CBOR with Accept: application/cbor), including archived history")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @RequestParam(defaultValue = "1") Long userId,
+            @RequestParam String from,
+            @RequestParam String to,
+            @RequestParam(defaultValue = "true") boolean includeArchive,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        
+        LocalDate fromDate = LocalDate.parse(from);
+        LocalDate toDate = LocalDate.parse(to);
+        
+        if (accept != null && MediaType.parseMediaTypes(accept).stream().anyMatch(MediaType.APPLICATION_CBOR::equalsTypeAndSubtype)) {
+            StreamingResponseBody body = outputStream ->
+                exportService.writeTransactionsCbor(userId, fromDate, toDate, includeArchive, outputStream);
+            return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"transactions.cbor\"")
+                .contentType(MediaType.APPLICATION_CBOR)
+                .body(body);
+        }
+        
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+            exportService.writeTransactionsCsv(userId, fromDate, toDate, includeArchive, writer);
+        };
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"transactions.csv\"")
+            .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+            .body(body);
+    }
+
     @PostMapping
-    @ResponseStatus(HttpStatus.CREATED)
-    @Operation(summary = "Create expense", description = "Create a new expense transaction")
-    public Transaction createExpense(@Valid @RequestBody ExpenseCreateDTO dto) {
-        return transactionService.createExpense(dto);
+    @Operation(summary = "Create expense", description = "Create a new expense transaction. Retries with the same Idempotency-Key replay the first response")
+    public ResponseEntity<?> createExpense(
+            @Valid @RequestBody ExpenseCreateDTO dto,
+            @RequestHeader(value = IdempotentResponses.HEADER, required = false) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return ResponseEntity.status(HttpStatus.CREATED).body(transactionService.createExpense(dto));
+        }
+        IdempotencyService.Outcome outcome = idempotencyService.execute(dto.userId(), idempotencyKey, "/api/expenses", dto,
+            HttpStatus.CREATED, Transaction.class, () -> transactionService.createExpense(dto));
+        return IdempotentResponses.of(outcome, HttpStatus.CREATED);
     }
 
     @DeleteMapping("/{id}")
     @Operation(summary = "Delete expense", description = "Delete an expense transaction by ID")
-    public void deleteExpense(@PathVariable Long id) {
-        transactionRepository.deleteById(id);
+    public void deleteExpense(@PathVariable Long id, @RequestParam(defaultValue = "1") Long userId) {
+        transactionService.deleteTransaction(id, userId);
+    }
+
+    @PostMapping("/bulk/recategorize")
+    @Operation(summary = "Bulk recategorize", description = "Set the category of all transactions matching the filter (dryRun reports counts only)")
+    public BulkService.BulkResult bulkRecategorize(@Valid @RequestBody BulkOperationDTO dto) {
+        return bulkService.recategorize(dto);
+    }
+
+    @PostMapping("/bulk/move")
+    @Operation(summary = "Bulk move", description = "Move all transactions matching the filter to another account of the same currency")
+    public BulkService.BulkResult bulkMove(@Valid @RequestBody BulkOperationDTO dto) {
+        return bulkService.move(dto);
+    }
+
+    @PostMapping("/bulk/delete")
+    @Operation(summary = "Bulk delete", description = "Delete all transactions matching the filter, including the other legs of matched transfers")
+    public BulkService.BulkResult bulkDelete(@Valid @RequestBody BulkOperationDTO dto) {
+        return bulkService.delete(dto);
     }
 }
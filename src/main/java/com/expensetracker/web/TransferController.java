@@ -1,12 +1,14 @@
 package com.expensetracker.web;
 
 import com.expensetracker.dto.TransferCreateDTO;
+import com.expensetracker.service.IdempotencyService;
 import com.expensetracker.service.TransactionService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 @RestController
@@ -17,10 +19,19 @@ public class TransferController {
     @Autowired
     private TransactionService transactionService;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
     @PostMapping
-    @ResponseStatus(HttpStatus.CREATED)
-    @Operation(summary = "Create transfer", description = "Create a new transfer between accounts")
-    public TransactionService.TransferResult createTransfer(@Valid @RequestBody TransferCreateDTO dto) {
-        return transactionService.createTransfer(dto);
+    @Operation(summary = "Create transfer", description = "Create a new transfer between accounts. Retries with the same Idempotency-Key replay the first response")
+    public ResponseEntity<?> createTransfer(
+            @Valid @RequestBody TransferCreateDTO dto,
+            @RequestHeader(value = IdempotentResponses.HEADER, required = false) String idempotencyKey) {
+        if (idempotencyKey == null) {
+            return ResponseEntity.status(HttpStatus.CREATED).body(transactionService.createTransfer(dto));
+        }
+        IdempotencyService.Outcome outcome = idempotencyService.execute(dto.userId(), idempotencyKey, "/api/transfer", dto,
+            HttpStatus.CREATED, TransactionService.TransferResult.class, () -> transactionService.createTransfer(dto));
+        return IdempotentResponses.of(outcome, HttpStatus.CREATED);
     }
 }
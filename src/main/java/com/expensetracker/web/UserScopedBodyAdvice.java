@@ -0,0 +1,35 @@
+package com.expensetracker.web;
+
+import com.expensetracker.dto.UserScoped;
+import com.expensetracker.service.ShardRouter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.RequestBodyAdviceAdapter;
+
+import java.lang.reflect.Type;
+
+// Binds requests whose body names the user (create DTOs, advisor) to that user's shard
+@ControllerAdvice
+public class UserScopedBodyAdvice extends RequestBodyAdviceAdapter {
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Override
+    public boolean supports(MethodParameter methodParameter, Type targetType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return targetType instanceof Class<?> type && UserScoped.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public Object afterBodyRead(Object body, HttpInputMessage inputMessage, MethodParameter parameter, Type targetType,
+                                Class<? extends HttpMessageConverter<?>> converterType) {
+        Long userId = ((UserScoped) body).userId();
+        if (userId != null) {
+            shardRouter.enter(userId);
+        }
+        return body;
+    }
+}
@@ -0,0 +1,11 @@
+-- PostgreSQL Migration V10 - Money as BIGINT minor units (hundredths) instead of NUMERIC
+
+ALTER TABLE accounts ALTER COLUMN opening_balance TYPE BIGINT USING ROUND(opening_balance * 100);
+ALTER TABLE transactions ALTER COLUMN amount TYPE BIGINT USING ROUND(amount * 100);
+ALTER TABLE transactions_archive ALTER COLUMN amount TYPE BIGINT USING ROUND(amount * 100);
+ALTER TABLE transaction_summaries
+    ALTER COLUMN total TYPE BIGINT USING ROUND(total * 100),
+    ALTER COLUMN total_base TYPE BIGINT USING ROUND(total_base * 100);
+ALTER TABLE category_rules
+    ALTER COLUMN min_amount TYPE BIGINT USING ROUND(min_amount * 100),
+    ALTER COLUMN max_amount TYPE BIGINT USING ROUND(max_amount * 100);
@@ -0,0 +1,4 @@
+-- PostgreSQL Migration V12 - Expense sketches in the base currency
+
+-- Sketches built so far mixed account currencies; each is rebuilt from history on first use
+DELETE FROM expense_sketches;
@@ -0,0 +1,12 @@
+-- PostgreSQL Migration V2 - Multi-currency accounts and FX rates
+
+-- Account currency (ISO 4217); existing accounts are IDR
+ALTER TABLE accounts ADD COLUMN currency VARCHAR(3) NOT NULL DEFAULT 'IDR';
+
+-- FX rates: 1 unit of currency = rate units of the base currency, as of date
+CREATE TABLE fx_rates (
+    date DATE NOT NULL,
+    currency VARCHAR(3) NOT NULL,
+    rate NUMERIC(24,10) NOT NULL CHECK (rate > 0),
+    PRIMARY KEY (date, currency)
+);
@@ -0,0 +1,7 @@
+-- PostgreSQL Migration V4 - Persisted per-category expense sketches (anomaly detection)
+CREATE TABLE expense_sketches (
+    user_id BIGINT NOT NULL,
+    category_id BIGINT NOT NULL,
+    data BYTEA NOT NULL,
+    PRIMARY KEY (user_id, category_id)
+);
@@ -0,0 +1,30 @@
+-- PostgreSQL Migration V5 - Cold history archive and monthly summaries
+
+-- Transactions moved out of the hot table by the archival job (same columns, ids preserved)
+CREATE TABLE transactions_archive (
+    id BIGINT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    account_id BIGINT NOT NULL,
+    category_id BIGINT,
+    type tx_type NOT NULL,
+    date DATE NOT NULL,
+    amount NUMERIC(18,2) NOT NULL,
+    note TEXT,
+    transfer_group VARCHAR(255),
+    created_at TIMESTAMP
+);
+
+CREATE INDEX idx_txa_user_date ON transactions_archive(user_id, date);
+
+-- Monthly totals of archived transactions; category_id 0 means no category
+CREATE TABLE transaction_summaries (
+    user_id BIGINT NOT NULL,
+    account_id BIGINT NOT NULL,
+    category_id BIGINT NOT NULL DEFAULT 0,
+    type VARCHAR(20) NOT NULL,
+    period DATE NOT NULL,
+    total NUMERIC(18,2) NOT NULL,
+    total_base NUMERIC(18,2) NOT NULL,
+    tx_count BIGINT NOT NULL,
+    PRIMARY KEY (user_id, account_id, category_id, type, period)
+);
@@ -0,0 +1,20 @@
+-- PostgreSQL Migration V7 - Auto-categorization rules
+
+-- All set conditions must match; the lowest priority (then id) wins
+CREATE TABLE category_rules (
+    id BIGSERIAL PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    category_id BIGINT NOT NULL,
+    keyword VARCHAR(255),
+    pattern VARCHAR(255),
+    min_amount NUMERIC(18,2),
+    max_amount NUMERIC(18,2),
+    account_id BIGINT,
+    priority INTEGER NOT NULL DEFAULT 0,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (user_id) REFERENCES users(id),
+    FOREIGN KEY (category_id) REFERENCES categories(id),
+    FOREIGN KEY (account_id) REFERENCES accounts(id)
+);
+
+CREATE INDEX idx_rules_user ON category_rules(user_id);
@@ -0,0 +1,18 @@
+-- PostgreSQL Migration V9 - Finished async report jobs
+
+-- Times are epoch milliseconds; rows are purged once expires_at has passed
+CREATE TABLE report_results (
+    id VARCHAR(36) PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    report VARCHAR(32) NOT NULL,
+    from_date DATE NOT NULL,
+    to_date DATE NOT NULL,
+    state VARCHAR(16) NOT NULL,
+    result BYTEA,
+    error TEXT,
+    created_at BIGINT NOT NULL,
+    finished_at BIGINT NOT NULL,
+    expires_at BIGINT NOT NULL
+);
+
+CREATE INDEX idx_report_results_expires ON report_results(expires_at);
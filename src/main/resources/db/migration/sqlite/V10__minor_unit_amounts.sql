@@ -0,0 +1,36 @@
+-- SQLite Migration V10 - Money as INTEGER minor units (hundredths) instead of REAL
+
+-- A REAL column converts stored integers back to floating point, so each money column is
+-- replaced by an INTEGER one: add, fill, drop the old column, rename
+ALTER TABLE accounts ADD COLUMN opening_balance_minor INTEGER NOT NULL DEFAULT 0;
+UPDATE accounts SET opening_balance_minor = CAST(ROUND(opening_balance * 100) AS INTEGER);
+ALTER TABLE accounts DROP COLUMN opening_balance;
+ALTER TABLE accounts RENAME COLUMN opening_balance_minor TO opening_balance;
+
+ALTER TABLE transactions ADD COLUMN amount_minor INTEGER NOT NULL DEFAULT 0;
+UPDATE transactions SET amount_minor = CAST(ROUND(amount * 100) AS INTEGER);
+ALTER TABLE transactions DROP COLUMN amount;
+ALTER TABLE transactions RENAME COLUMN amount_minor TO amount;
+
+ALTER TABLE transactions_archive ADD COLUMN amount_minor INTEGER NOT NULL DEFAULT 0;
+UPDATE transactions_archive SET amount_minor = CAST(ROUND(amount * 100) AS INTEGER);
+ALTER TABLE transactions_archive DROP COLUMN amount;
+ALTER TABLE transactions_archive RENAME COLUMN amount_minor TO amount;
+
+ALTER TABLE transaction_summaries ADD COLUMN total_minor INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE transaction_summaries ADD COLUMN total_base_minor INTEGER NOT NULL DEFAULT 0;
+UPDATE transaction_summaries SET total_minor = CAST(ROUND(total * 100) AS INTEGER),
+                                 total_base_minor = CAST(ROUND(total_base * 100) AS INTEGER);
+ALTER TABLE transaction_summaries DROP COLUMN total;
+ALTER TABLE transaction_summaries DROP COLUMN total_base;
+ALTER TABLE transaction_summaries RENAME COLUMN total_minor TO total;
+ALTER TABLE transaction_summaries RENAME COLUMN total_base_minor TO total_base;
+
+ALTER TABLE category_rules ADD COLUMN min_amount_minor INTEGER;
+ALTER TABLE category_rules ADD COLUMN max_amount_minor INTEGER;
+UPDATE category_rules SET min_amount_minor = CAST(ROUND(min_amount * 100) AS INTEGER),
+                          max_amount_minor = CAST(ROUND(max_amount * 100) AS INTEGER);
+ALTER TABLE category_rules DROP COLUMN min_amount;
+ALTER TABLE category_rules DROP COLUMN max_amount;
+ALTER TABLE category_rules RENAME COLUMN min_amount_minor TO min_amount;
+ALTER TABLE category_rules RENAME COLUMN max_amount_minor TO max_amount;
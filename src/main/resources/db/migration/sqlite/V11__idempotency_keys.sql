@@ -0,0 +1,15 @@
+-- SQLite Migration V11 - Idempotency keys for retried creates
+
+-- response holds the JSON body returned for the key; times are epoch milliseconds
+CREATE TABLE idempotency_keys (
+    user_id INTEGER NOT NULL,
+    idem_key TEXT NOT NULL,
+    request_hash TEXT NOT NULL,
+    status INTEGER NOT NULL,
+    response BLOB NOT NULL,
+    created_at INTEGER NOT NULL,
+    expires_at INTEGER NOT NULL,
+    PRIMARY KEY (user_id, idem_key)
+);
+
+CREATE INDEX idx_idempotency_keys_expires ON idempotency_keys(expires_at);
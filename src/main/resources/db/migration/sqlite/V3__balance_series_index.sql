@@ -0,0 +1,2 @@
+-- SQLite Migration V3 - Index for per-account ordered scans (balance series)
+CREATE INDEX idx_tx_user_account_date ON transactions(user_id, account_id, date);
@@ -0,0 +1,7 @@
+-- SQLite Migration V4 - Persisted per-category expense sketches (anomaly detection)
+CREATE TABLE expense_sketches (
+    user_id INTEGER NOT NULL,
+    category_id INTEGER NOT NULL,
+    data BLOB NOT NULL,
+    PRIMARY KEY (user_id, category_id)
+);
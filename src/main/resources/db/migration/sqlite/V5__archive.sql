@@ -0,0 +1,30 @@
+-- SQLite Migration V5 - Cold history archive and monthly summaries
+
+-- Transactions moved out of the hot table by the archival job (same columns, ids preserved)
+CREATE TABLE transactions_archive (
+    id INTEGER PRIMARY KEY,
+    user_id INTEGER NOT NULL,
+    account_id INTEGER NOT NULL,
+    category_id INTEGER,
+    type TEXT NOT NULL,
+    date TEXT NOT NULL,
+    amount REAL NOT NULL,
+    note TEXT,
+    transfer_group TEXT,
+    created_at TEXT
+);
+
+CREATE INDEX idx_txa_user_date ON transactions_archive(user_id, date);
+
+-- Monthly totals of archived transactions; category_id 0 means no category
+CREATE TABLE transaction_summaries (
+    user_id INTEGER NOT NULL,
+    account_id INTEGER NOT NULL,
+    category_id INTEGER NOT NULL DEFAULT 0,
+    type TEXT NOT NULL,
+    period TEXT NOT NULL,
+    total REAL NOT NULL,
+    total_base REAL NOT NULL,
+    tx_count INTEGER NOT NULL,
+    PRIMARY KEY (user_id, account_id, category_id, type, period)
+);
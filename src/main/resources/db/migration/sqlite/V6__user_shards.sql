@@ -0,0 +1,7 @@
+-- SQLite Migration V6 - Shard directory
+
+-- Shard directory: users pinned to a shard other than their hash assignment (sharded SQLite mode only)
+CREATE TABLE user_shards (
+    user_id INTEGER PRIMARY KEY,
+    shard INTEGER NOT NULL
+);
@@ -0,0 +1,20 @@
+-- SQLite Migration V7 - Auto-categorization rules
+
+-- All set conditions must match; the lowest priority (then id) wins
+CREATE TABLE category_rules (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    user_id INTEGER NOT NULL,
+    category_id INTEGER NOT NULL,
+    keyword TEXT,
+    pattern TEXT,
+    min_amount REAL,
+    max_amount REAL,
+    account_id INTEGER,
+    priority INTEGER NOT NULL DEFAULT 0,
+    created_at TEXT DEFAULT (datetime('now')),
+    FOREIGN KEY (user_id) REFERENCES users(id),
+    FOREIGN KEY (category_id) REFERENCES categories(id),
+    FOREIGN KEY (account_id) REFERENCES accounts(id)
+);
+
+CREATE INDEX idx_rules_user ON category_rules(user_id);
@@ -0,0 +1,8 @@
+-- SQLite Migration V8 - Content hashes of imported statement rows
+
+-- Hash of (account, date, amount, normalized note, occurrence); NULL for rows not imported
+ALTER TABLE transactions ADD COLUMN content_hash TEXT;
+ALTER TABLE transactions_archive ADD COLUMN content_hash TEXT;
+
+CREATE INDEX idx_tx_content_hash ON transactions(account_id, content_hash);
+CREATE INDEX idx_txa_content_hash ON transactions_archive(account_id, content_hash);
@@ -0,0 +1,18 @@
+-- SQLite Migration V9 - Finished async report jobs
+
+-- Times are epoch milliseconds; rows are purged once expires_at has passed
+CREATE TABLE report_results (
+    id TEXT PRIMARY KEY,
+    user_id INTEGER NOT NULL,
+    report TEXT NOT NULL,
+    from_date TEXT NOT NULL,
+    to_date TEXT NOT NULL,
+    state TEXT NOT NULL,
+    result BLOB,
+    error TEXT,
+    created_at INTEGER NOT NULL,
+    finished_at INTEGER NOT NULL,
+    expires_at INTEGER NOT NULL
+);
+
+CREATE INDEX idx_report_results_expires ON report_results(expires_at);